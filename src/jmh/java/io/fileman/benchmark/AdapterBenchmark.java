@@ -0,0 +1,100 @@
+package io.fileman.benchmark;
+
+import io.fileman.*;
+import io.fileman.adapter.NameAdapter;
+import io.fileman.adapter.TimeAdapter;
+import io.fileman.adapter.ViewAdapter;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内置适配器渲染单个子文件的开销，配合 {@code -prof gc} 比较每个子文件的内存分配（gc.alloc.rate.norm），
+ * legacy 开头的基准是改为低分配实现之前的写法，作为对照。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterBenchmark {
+    private final TimeAdapter time = new TimeAdapter();
+    private final NameAdapter name = new NameAdapter();
+    private final ViewAdapter view = new ViewAdapter();
+    private File root;
+    private File file;
+    private SynthesizeContext<Converter> entry;
+
+    @Setup
+    public void setup() throws IOException {
+        root = Stubs.directory(0);
+        File directory = new File(root, "logs/app");
+        if (!directory.mkdirs()) throw new IOException("can not create " + directory);
+        file = new File(directory, "report-2018-10-18.log");
+        if (!file.createNewFile()) throw new IOException("can not create " + file);
+        Configuration configuration = Stubs.configuration(new HashMap<String, String>());
+        HttpServletRequest request = Stubs.request("/fileman/logs/app/", "/fileman");
+        SynthesizeContext<Converter> context = new SynthesizeContext<>(root, configuration, request, Stubs.response(), Collections.<Converter>emptyList());
+        entry = new SynthesizeContext<>(context, file, ActionContext.snapshot(file));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Stubs.delete(root);
+    }
+
+    @Benchmark
+    public Object time() throws IOException {
+        return time.render(file, new RenderContext(entry));
+    }
+
+    @Benchmark
+    public Object name() throws IOException {
+        return name.render(file, new RenderContext(entry));
+    }
+
+    @Benchmark
+    public Object view() throws IOException {
+        return view.render(file, new RenderContext(entry));
+    }
+
+    @Benchmark
+    public Object legacyTime() throws IOException {
+        RenderContext context = new RenderContext(entry);
+        Date lastModified = new Date(context.attributesOf(file).lastModifiedTime().toMillis());
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(lastModified);
+    }
+
+    @Benchmark
+    public Object legacyName() throws IOException {
+        ResolveContext context = new ResolveContext(new RenderContext(entry));
+        BasicFileAttributes attributes = context.attributesOf(file);
+        Object name = attributes.isDirectory() ? file.getName() + "/" : file.getName();
+        return "<a href=\"./" + name + "\">" + name + "</a>";
+    }
+
+    @Benchmark
+    public Object legacyView() throws IOException {
+        ResolveContext context = new ResolveContext(new RenderContext(entry));
+        if (context.attributesOf(file).isDirectory()) return "";
+        String filemanPath = context.getRoot().toURI().relativize(file.toURI()).toString();
+        int length = filemanPath.split("/+").length;
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < length; i++) path.append("../");
+        path.append("fileman.html");
+        String hash = "./" + context.getRequest().getServletPath() + "/" + filemanPath;
+        return "<a href=\"" + (path + "#" + hash).replaceAll("/+", "/") + "\" target=\"_blank\">view</a>";
+    }
+}
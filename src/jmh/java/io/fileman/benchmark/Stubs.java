@@ -0,0 +1,144 @@
+package io.fileman.benchmark;
+
+import io.fileman.Configuration;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用的配置、请求及回应桩，回应的内容直接丢弃
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+final class Stubs {
+
+    private Stubs() {
+        throw new UnsupportedOperationException();
+    }
+
+    static Configuration configuration(final Map<String, String> values) {
+        return new Configuration() {
+            @Override
+            public Enumeration<String> names() {
+                return Collections.enumeration(values.keySet());
+            }
+
+            @Override
+            public String valueOf(String name) {
+                return values.get(name);
+            }
+
+            @Override
+            public String valueOf(String name, String defaultValue) {
+                String value = values.get(name);
+                return value != null ? value : defaultValue;
+            }
+        };
+    }
+
+    /**
+     * @param uri         请求 URI
+     * @param servletPath Servlet 路径
+     * @return 没有参数、请求头及属性的 GET 请求
+     */
+    static HttpServletRequest request(String uri, String servletPath) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("getRequestURI", uri);
+        values.put("getServletPath", servletPath);
+        values.put("getContextPath", "");
+        values.put("getMethod", "GET");
+        values.put("getCharacterEncoding", "UTF-8");
+        return proxy(HttpServletRequest.class, values);
+    }
+
+    /**
+     * @return 丢弃输出内容的回应
+     */
+    static HttpServletResponse response() {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("getOutputStream", new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        values.put("getCharacterEncoding", "UTF-8");
+        return proxy(HttpServletResponse.class, values);
+    }
+
+    private static <T> T proxy(Class<T> type, final Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (values.containsKey(method.getName())) return values.get(method.getName());
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) return false;
+                if (returnType == int.class) return 0;
+                if (returnType == long.class) return 0L;
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * 在临时目录下创建若干个文件
+     *
+     * @param count 文件数量
+     * @return 临时目录
+     * @throws IOException I/O 异常
+     */
+    static File directory(int count) throws IOException {
+        File directory = Files.createTempDirectory("fileman-benchmark").toFile();
+        for (int i = 0; i < count; i++) {
+            Files.write(new File(directory, "report-" + i + ".log").toPath(), new byte[i % 512]);
+        }
+        return directory;
+    }
+
+    static void delete(File directory) throws IOException {
+        if (directory == null) return;
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
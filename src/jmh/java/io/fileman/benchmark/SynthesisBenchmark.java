@@ -0,0 +1,88 @@
+package io.fileman.benchmark;
+
+import io.fileman.Configuration;
+import io.fileman.FilemanWebSupport;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 串行合成与并行合成整个目录列表的对比，关闭目录列表缓存，每次调用都重新合成并格式化。
+ * synthesize-threads 为 0 时串行合成，否则在线程池中并行合成。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SynthesisBenchmark {
+    @Param({"0", "4"})
+    public int threads;
+    @Param({"1000"})
+    public int entries;
+    @Param({"name,size,time,type,etag,view"})
+    public String fields;
+
+    private File root;
+    private Support support;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setup() throws IOException, ServletException {
+        root = Stubs.directory(entries);
+        Map<String, String> values = new HashMap<>();
+        values.put("root", root.getPath());
+        values.put("fields", fields);
+        values.put("synthesize-threads", String.valueOf(threads));
+        values.put("listing-cache-size", "0");
+        values.put("listing-cache-entry-bytes", "0");
+        support = new Support();
+        support.init(Stubs.configuration(values));
+        request = Stubs.request("/fileman/", "/fileman");
+        response = Stubs.response();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        support.destroy();
+        Stubs.delete(root);
+    }
+
+    @Benchmark
+    public void list() throws IOException {
+        support.get(request, response);
+    }
+
+    /**
+     * 开放受保护的生命周期及 GET 处理方法
+     */
+    static class Support extends FilemanWebSupport {
+
+        @Override
+        protected void init(Configuration configuration) throws ServletException {
+            super.init(configuration);
+        }
+
+        @Override
+        protected void get(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            super.get(request, response);
+        }
+
+        @Override
+        protected void destroy() {
+            super.destroy();
+        }
+    }
+}
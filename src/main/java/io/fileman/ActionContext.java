@@ -3,6 +3,13 @@ package io.fileman;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 解析动作
@@ -27,19 +34,72 @@ public abstract class ActionContext {
      * 回应
      */
     protected final HttpServletResponse response;
+    /**
+     * 文件编码探测
+     */
+    protected final Charsets charsets;
+    /**
+     * 文件类型探测
+     */
+    protected final ContentTypes contentTypes;
+    /**
+     * 文件摘要存储
+     */
+    protected final Digests digests;
+    /**
+     * 请求范围内的共享属性，由同一个请求派生的所有上下文共享，合成线程池中的转换器可以并发访问，
+     * 代替线程不安全的请求属性
+     */
+    protected final ConcurrentMap<String, Object> scope;
+    /**
+     * 属性快照对应的文件
+     */
+    protected final File target;
+    /**
+     * 文件属性快照，同一个文件的所有转换器共享，避免每个转换器各自访问文件系统
+     */
+    protected final BasicFileAttributes attributes;
 
     protected ActionContext(ActionContext context) {
+        this(context, context.target, context.attributes);
+    }
+
+    protected ActionContext(ActionContext context, File target, BasicFileAttributes attributes) {
         this.root = context.root;
         this.configuration = context.configuration;
         this.request = context.request;
         this.response = context.response;
+        this.charsets = context.charsets;
+        this.contentTypes = context.contentTypes;
+        this.digests = context.digests;
+        this.scope = context.scope;
+        this.target = target;
+        this.attributes = attributes;
     }
 
     protected ActionContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response) {
+        this(root, configuration, request, response, null);
+    }
+
+    protected ActionContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, Charsets charsets) {
+        this(root, configuration, request, response, charsets, null);
+    }
+
+    protected ActionContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, Charsets charsets, ContentTypes contentTypes) {
+        this(root, configuration, request, response, charsets, contentTypes, null);
+    }
+
+    protected ActionContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, Charsets charsets, ContentTypes contentTypes, Digests digests) {
         this.root = root;
         this.configuration = configuration;
         this.request = request;
         this.response = response;
+        this.charsets = charsets;
+        this.contentTypes = contentTypes;
+        this.digests = digests;
+        this.scope = new ConcurrentHashMap<>();
+        this.target = null;
+        this.attributes = null;
     }
 
     public File getRoot() {
@@ -57,4 +117,105 @@ public abstract class ActionContext {
     public HttpServletResponse getResponse() {
         return response;
     }
+
+    /**
+     * 获取请求范围内的共享属性
+     *
+     * @param name 属性名
+     * @return 属性值，没有时返回{@code null}
+     */
+    public Object getAttribute(String name) {
+        return scope.get(name);
+    }
+
+    /**
+     * 设置请求范围内的共享属性，可以在合成线程池中并发调用
+     *
+     * @param name  属性名
+     * @param value 属性值，为{@code null}时移除
+     */
+    public void setAttribute(String name, Object value) {
+        if (value == null) scope.remove(name);
+        else scope.put(name, value);
+    }
+
+    public Charsets getCharsets() {
+        return charsets;
+    }
+
+    /**
+     * 获取文件属性，优先使用属性快照，没有快照的文件才访问文件系统
+     *
+     * @param file 文件
+     * @return 文件属性
+     * @throws IOException I/O 异常
+     */
+    public BasicFileAttributes attributesOf(File file) throws IOException {
+        if (attributes != null && file.equals(target)) return attributes;
+        return snapshot(file);
+    }
+
+    /**
+     * 一次性读取文件属性，符号链接失效时读取链接本身的属性
+     *
+     * @param file 文件
+     * @return 文件属性
+     * @throws IOException I/O 异常
+     */
+    public static BasicFileAttributes snapshot(File file) throws IOException {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    /**
+     * 获取文件编码，优先使用框架缓存的探测结果，没有配置时使用缺省探测
+     *
+     * @param file 文件
+     * @return 文件编码
+     * @throws IOException I/O 异常
+     */
+    public String charsetOf(File file) throws IOException {
+        Charsets charsets = this.charsets != null ? this.charsets : Charsets.DEFAULT;
+        return charsets.charsetOf(file);
+    }
+
+    public ContentTypes getContentTypes() {
+        return contentTypes;
+    }
+
+    /**
+     * 获取文件类型，优先使用配置的文件类型探测，没有配置时使用缺省探测
+     *
+     * @param file    文件
+     * @param channel 已经打开的文件通道，可以为{@code null}
+     * @return 文件类型，无法判断时返回{@code null}
+     * @throws IOException I/O 异常
+     */
+    public String contentTypeOf(File file, FileChannel channel) throws IOException {
+        ContentTypes contentTypes = this.contentTypes != null ? this.contentTypes : ContentTypes.DEFAULT;
+        return contentTypes.contentTypeOf(file, attributesOf(file), channel);
+    }
+
+    public Digests getDigests() {
+        return digests;
+    }
+
+    /**
+     * 获取文件当前版本的摘要，没有记录时交给后台计算并在请求范围的共享属性中标记 {@link Digests#PENDING}，
+     * 合成线程池中的线程也可以安全地标记
+     *
+     * @param file 文件
+     * @return 摘要，没有配置摘要存储或者还没有计算好时返回{@code null}
+     * @throws IOException I/O 异常
+     */
+    public byte[] digestOf(File file) throws IOException {
+        if (digests == null) return null;
+        BasicFileAttributes attributes = attributesOf(file);
+        byte[] digest = digests.lookup(file, attributes);
+        if (digest == null && digests.isHashing() && attributes.isRegularFile()) setAttribute(Digests.PENDING, Boolean.TRUE);
+        return digest;
+    }
 }
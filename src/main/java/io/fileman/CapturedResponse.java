@@ -0,0 +1,150 @@
+package io.fileman;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * 捕获输出内容的回应，在限定的长度内先缓存输出内容，超出限定长度后把已缓存的内容写出并转为直接输出。
+ * 重定向或返回错误的回应不会被捕获。调用 {@link #flushBuffer()} 显式刷新回应说明希望客户端尽早收到内容，
+ * 此时把已缓存的内容写出，之后的内容一边直接输出一边继续捕获，捕获的内容仍可用于缓存，但回应已经提交，
+ * 不能再带上 ETag；而输出流的 flush 在捕获期间被忽略，因为序列化器往往每写一个对象就刷新一次。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class CapturedResponse extends HttpServletResponseWrapper {
+    private final int limit;
+    private ByteArrayOutputStream buffer;
+    private ServletOutputStream out;
+    private PrintWriter writer;
+    private ServletOutputStream stream;
+    private boolean passed;
+    private boolean flushed;
+
+    public CapturedResponse(HttpServletResponse response, int limit) {
+        super(response);
+        this.limit = limit;
+        this.buffer = new ByteArrayOutputStream(Math.min(limit, 8 * 1024));
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+        if (stream == null) stream = new CaptureStream();
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer != null) return writer;
+        if (stream != null) throw new IllegalStateException("getOutputStream() has already been called");
+        stream = new CaptureStream();
+        writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) writer.flush();
+        if (!passed && !flushed) {
+            flushed = true;
+            out = super.getOutputStream();
+            buffer.writeTo(out);
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        pass();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        pass();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        pass();
+        super.sendError(sc, msg);
+    }
+
+    /**
+     * 结束捕获
+     *
+     * @return 捕获的输出内容，如果已经转为直接输出则返回{@code null}
+     */
+    public byte[] finish() {
+        if (writer != null) writer.flush();
+        return passed ? null : buffer.toByteArray();
+    }
+
+    /**
+     * @return 捕获的内容是否已经随 {@link #flushBuffer()} 写出
+     */
+    public boolean isFlushed() {
+        return flushed;
+    }
+
+    /**
+     * 放弃捕获，把已缓存的内容写出并转为直接输出
+     *
+     * @throws IOException I/O 异常
+     */
+    public void pass() throws IOException {
+        if (passed) return;
+        passed = true;
+        if (!flushed && buffer.size() > 0) {
+            out = super.getOutputStream();
+            buffer.writeTo(out);
+        }
+        buffer = null;
+    }
+
+    private class CaptureStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!passed && buffer.size() + len > limit) pass();
+            if (!passed) buffer.write(b, off, len);
+            // 刷新之前只捕获，刷新之后同时输出
+            if (!passed && !flushed) return;
+            if (out == null) out = CapturedResponse.super.getOutputStream();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.fileman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 只读文件通道缓存，以文件路径、大小和最后修改时间作为缓存键，按最近最少使用淘汰。
+ * 缓存项采用引用计数，被淘汰或失效的缓存项会在最后一个租约关闭后才真正关闭文件。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/11
+ */
+public class ChannelCache implements Releasable {
+    private final int capacity;
+    private final ContentTypes contentTypes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicInteger opened = new AtomicInteger();
+
+    public ChannelCache(int capacity) {
+        this(capacity, ContentTypes.DEFAULT);
+    }
+
+    public ChannelCache(int capacity, ContentTypes contentTypes) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+        this.capacity = capacity;
+        this.contentTypes = contentTypes;
+    }
+
+    /**
+     * 打开指定文件的只读共享通道，调用方使用完毕后需要关闭返回的通道。
+     *
+     * @param file 文件
+     * @return 共享文件通道
+     * @throws IOException I/O 异常
+     */
+    public SharedFileChannel open(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = path.toString();
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.modified == modified) {
+                hits.incrementAndGet();
+                return entry.lease();
+            }
+            if (entry != null) entries.remove(key).evict();
+        }
+        misses.incrementAndGet();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        opened.incrementAndGet();
+        Entry created = new Entry(path, size, modified, channel);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            // 并发未命中时保留先放入的缓存项
+            if (entry != null && entry.size == size && entry.modified == modified) {
+                created.evict();
+                return entry.lease();
+            }
+            if (entry != null) entries.remove(key).evict();
+            entries.put(key, created);
+            SharedFileChannel lease = created.lease();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > capacity && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                eldest.evict();
+            }
+            return lease;
+        }
+    }
+
+    /**
+     * 使指定文件或目录下所有文件的缓存项失效
+     *
+     * @param file 文件或目录
+     */
+    public synchronized void invalidate(File file) {
+        String key = file.toPath().toAbsolutePath().normalize().toString();
+        String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (!entry.getKey().equals(key) && !entry.getKey().startsWith(prefix)) continue;
+            iterator.remove();
+            entry.getValue().evict();
+        }
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return 当前打开的文件句柄数量，包括已被淘汰但仍被引用的
+     */
+    public int getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * @return 当前缓存项数量
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void release() {
+        for (Entry entry : entries.values()) entry.evict();
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelCache{hits=" + getHits() + ", misses=" + getMisses() + ", opened=" + getOpened() + ", size=" + getSize() + "}";
+    }
+
+    /**
+     * 缓存项
+     */
+    class Entry {
+        final Path path;
+        final long size;
+        final long modified;
+        final FileChannel channel;
+        private int references;
+        private boolean evicted;
+        private boolean closed;
+        private volatile String contentType;
+
+        Entry(Path path, long size, long modified, FileChannel channel) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.channel = channel;
+        }
+
+        SharedFileChannel lease() {
+            synchronized (ChannelCache.this) {
+                references++;
+            }
+            return new SharedFileChannel(this);
+        }
+
+        void release() {
+            synchronized (ChannelCache.this) {
+                if (--references == 0 && evicted) close();
+            }
+        }
+
+        void evict() {
+            synchronized (ChannelCache.this) {
+                evicted = true;
+                if (references == 0) close();
+            }
+        }
+
+        String contentType() throws IOException {
+            String type = contentType;
+            if (type == null) {
+                type = Toolkit.ifNull(contentTypes.contentTypeOf(path.toFile(), null, channel), "");
+                contentType = type;
+            }
+            return type.isEmpty() ? null : type;
+        }
+
+        private void close() {
+            if (closed) return;
+            closed = true;
+            Toolkit.close(channel);
+            opened.decrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package io.fileman;
+
+/**
+ * 文件编码探测器
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/17
+ */
+public interface CharsetDetector extends Plugin {
+
+    /**
+     * SPI 实现名称，用于和配置的值对应。
+     *
+     * @return SPI 实现名称
+     */
+    String name();
+
+    /**
+     * 根据文件开头的字节探测文件编码
+     *
+     * @param head   文件开头的字节
+     * @param length 有效字节数，文件比探测长度短时小于数组长度
+     * @param whole  是否已经包含了文件的全部内容
+     * @return 文件编码，无法判断时返回 null 交由下一个探测器判断
+     */
+    String detect(byte[] head, int length, boolean whole);
+
+}
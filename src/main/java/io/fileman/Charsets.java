@@ -0,0 +1,119 @@
+package io.fileman;
+
+import io.fileman.detector.BomCharsetDetector;
+import io.fileman.detector.UTF8CharsetDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件编码探测，只读取文件开头有限长度的字节交给各个探测器依次判断，
+ * 结果以文件路径、大小及最后修改时间为键缓存。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/17
+ */
+public class Charsets implements Releasable {
+    /**
+     * 没有配置时使用的缺省探测，先查字节序标记再判断 UTF-8，都无法判断时视为 GBK，不缓存结果
+     */
+    public static final Charsets DEFAULT = new Charsets(Arrays.<CharsetDetector>asList(new BomCharsetDetector(), new UTF8CharsetDetector()), 1024 * 64, 0, "GBK");
+
+    private final List<CharsetDetector> detectors;
+    private final int sniff;
+    private final int capacity;
+    private final String fallback;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param detectors 编码探测器
+     * @param sniff     探测读取的最大字节数
+     * @param capacity  最多缓存的文件数量
+     * @param fallback  所有探测器都无法判断时的缺省编码
+     */
+    public Charsets(List<CharsetDetector> detectors, int sniff, int capacity, String fallback) {
+        this.detectors = new ArrayList<>(detectors);
+        this.sniff = sniff;
+        this.capacity = capacity;
+        this.fallback = fallback;
+    }
+
+    /**
+     * 获取文件编码
+     *
+     * @param file 文件
+     * @return 文件编码
+     * @throws IOException I/O 异常
+     */
+    public String charsetOf(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = path.toString();
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.modified == modified) return entry.charset;
+        }
+        String charset = detect(path);
+        synchronized (this) {
+            entries.put(key, new Entry(size, modified, charset));
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return charset;
+    }
+
+    private String detect(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(sniff);
+        boolean whole;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            int len = 0;
+            while (buf.hasRemaining() && (len = channel.read(buf)) > 0) ;
+            whole = len < 0 || buf.position() >= channel.size();
+        } finally {
+            Toolkit.close(channel);
+        }
+        byte[] head = buf.array();
+        int length = buf.position();
+        for (CharsetDetector detector : detectors) {
+            String charset = detector.detect(head, length, whole);
+            if (charset != null) return charset;
+        }
+        return fallback;
+    }
+
+    @Override
+    public synchronized void release() {
+        entries.clear();
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String charset;
+
+        Entry(long size, long modified, String charset) {
+            this.size = size;
+            this.modified = modified;
+            this.charset = charset;
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package io.fileman;
+
+/**
+ * 上传内容范围，对应 Content-Range: bytes START-END/TOTAL 请求头，
+ * bytes &#42;/TOTAL 表示不上传内容，只查询上传进度。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ContentRange {
+    /**
+     * 内容计量单位
+     */
+    private final String unit;
+    /**
+     * 起始下标，包含，查询进度时为 -1
+     */
+    private final long start;
+    /**
+     * 结束下标，包含，查询进度时为 -1
+     */
+    private final long end;
+    /**
+     * 文件总长度
+     */
+    private final long total;
+
+    public ContentRange(String unit, long start, long end, long total) {
+        if (unit == null) throw new NullPointerException();
+        if (total < 0) throw new IllegalArgumentException("total must not be negative");
+        if (start >= 0 && (end < start || end >= total)) throw new IllegalArgumentException("invalid range: " + start + "-" + end + "/" + total);
+        this.unit = unit;
+        this.start = start;
+        this.end = end;
+        this.total = total;
+    }
+
+    public static ContentRange valueOf(String value) {
+        if (value == null) throw new NullPointerException();
+        String range = value.trim();
+        int space = range.indexOf(' ');
+        int slash = range.lastIndexOf('/');
+        if (space < 0 || slash < space) {
+            throw new IllegalArgumentException("could not parse: " + value + " to content range, expecting pattern like: UNIT START-END/TOTAL");
+        }
+        String unit = range.substring(0, space).trim();
+        String section = range.substring(space + 1, slash).trim();
+        try {
+            long total = Long.valueOf(range.substring(slash + 1).trim());
+            if ("*".equals(section)) return new ContentRange(unit, -1L, -1L, total);
+            int index = section.indexOf('-');
+            if (index < 0) {
+                throw new IllegalArgumentException("could not parse: " + value + " to content range, expecting pattern like: UNIT START-END/TOTAL");
+            }
+            long start = Long.valueOf(section.substring(0, index).trim());
+            long end = Long.valueOf(section.substring(index + 1).trim());
+            return new ContentRange(unit, start, end, total);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("could not parse: " + value + " to content range, expecting pattern like: UNIT START-END/TOTAL");
+        }
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return 是否只查询上传进度
+     */
+    public boolean isQuery() {
+        return start < 0;
+    }
+
+    /**
+     * @return 范围内的字节数
+     */
+    public long getLength() {
+        return isQuery() ? 0L : end - start + 1;
+    }
+
+    @Override
+    public String toString() {
+        return unit + " " + (isQuery() ? "*" : start + "-" + end) + "/" + total;
+    }
+}
@@ -0,0 +1,35 @@
+package io.fileman;
+
+/**
+ * 文件类型探测器
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public interface ContentTypeDetector extends Plugin {
+
+    /**
+     * SPI 实现名称，用于和配置的值对应。
+     *
+     * @return SPI 实现名称
+     */
+    String name();
+
+    /**
+     * 探测需要读取的文件开头字节数，只根据文件名探测时返回 0 ，此时不会读取文件内容。
+     *
+     * @return 需要读取的文件开头字节数
+     */
+    int sniff();
+
+    /**
+     * 根据文件名及文件开头的字节探测文件类型
+     *
+     * @param filename 文件名
+     * @param head     文件开头的字节，当 {@link #sniff()} 返回 0 时为 {@code null}
+     * @param length   文件开头的字节数
+     * @return 文件类型，无法判断时返回{@code null}
+     */
+    String detect(String filename, byte[] head, int length);
+
+}
@@ -0,0 +1,158 @@
+package io.fileman;
+
+import io.fileman.detector.ExtensionContentTypeDetector;
+import io.fileman.detector.MagicContentTypeDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件类型探测，各个探测器依次判断，只有需要时才读取文件开头的字节，
+ * 结果以文件路径、大小及最后修改时间为键缓存。
+ * <p>
+ * 调用者已经打开文件时才读取文件开头的字节，例如下载及部分读取；列表中的文件没有打开，
+ * 逐个打开文件会使列表的开销随子文件数量成倍增加，因此缺省只用不读取内容的探测器判断，
+ * 只有开启 sniffing 时才为判断而打开文件。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ContentTypes implements Releasable {
+    /**
+     * 没有配置时使用的缺省探测，先查扩展名再判断魔数，不缓存结果
+     */
+    public static final ContentTypes DEFAULT = new ContentTypes(Arrays.<ContentTypeDetector>asList(new ExtensionContentTypeDetector(), new MagicContentTypeDetector()), 0, false);
+
+    private final List<ContentTypeDetector> detectors;
+    private final int capacity;
+    private final boolean sniffing;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param detectors 文件类型探测器
+     * @param capacity  最多缓存的文件数量
+     */
+    public ContentTypes(List<ContentTypeDetector> detectors, int capacity) {
+        this(detectors, capacity, false);
+    }
+
+    /**
+     * @param detectors 文件类型探测器
+     * @param capacity  最多缓存的文件数量
+     * @param sniffing  没有传入已打开的文件通道时是否打开文件读取开头的字节
+     */
+    public ContentTypes(List<ContentTypeDetector> detectors, int capacity, boolean sniffing) {
+        this.detectors = new ArrayList<>(detectors);
+        this.capacity = capacity;
+        this.sniffing = sniffing;
+    }
+
+    /**
+     * 获取文件类型
+     *
+     * @param file 文件
+     * @return 文件类型，无法判断时返回{@code null}
+     * @throws IOException I/O 异常
+     */
+    public String contentTypeOf(File file) throws IOException {
+        return contentTypeOf(file, null, null);
+    }
+
+    /**
+     * 获取文件类型
+     *
+     * @param file       文件
+     * @param attributes 文件属性快照，为{@code null}时读取文件属性
+     * @param channel    已经打开的文件通道，为{@code null}时只有开启 sniffing 才打开文件读取内容，传入的通道不会被关闭
+     * @return 文件类型，无法判断时返回{@code null}
+     * @throws IOException I/O 异常
+     */
+    public String contentTypeOf(File file, BasicFileAttributes attributes, FileChannel channel) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (attributes == null) attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attributes.isDirectory()) return null;
+        String key = path.toString();
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        boolean readable = channel != null || sniffing;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            // 没有读取内容得到的结果在能读取内容时需要重新判断
+            if (entry != null && entry.size == size && entry.modified == modified && (entry.complete || !readable)) return entry.contentType;
+        }
+        Entry detected = detect(path, channel, readable, size, modified);
+        if (capacity == 0) return detected.contentType;
+        synchronized (this) {
+            entries.put(key, detected);
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return detected.contentType;
+    }
+
+    private Entry detect(Path path, FileChannel channel, boolean readable, long size, long modified) throws IOException {
+        String filename = path.getFileName() != null ? path.getFileName().toString() : "";
+        byte[] head = null;
+        int length = 0;
+        boolean complete = true;
+        for (ContentTypeDetector detector : detectors) {
+            int sniff = detector.sniff();
+            // 不能读取内容时跳过需要读取内容的探测器
+            if (sniff > 0 && !readable) {
+                complete = false;
+                continue;
+            }
+            // 只读取一次文件开头，后续探测器需要更多字节时才重新读取
+            if (sniff > 0 && (head == null || head.length < sniff)) {
+                ByteBuffer buf = ByteBuffer.allocate(sniff);
+                if (channel != null) {
+                    while (buf.hasRemaining() && channel.read(buf, buf.position()) > 0) ;
+                } else {
+                    try (FileChannel opened = FileChannel.open(path, StandardOpenOption.READ)) {
+                        while (buf.hasRemaining() && opened.read(buf) > 0) ;
+                    }
+                }
+                head = buf.array();
+                length = buf.position();
+            }
+            String contentType = detector.detect(filename, sniff > 0 ? head : null, sniff > 0 ? Math.min(length, sniff) : 0);
+            if (contentType != null) return new Entry(size, modified, contentType, true);
+        }
+        return new Entry(size, modified, null, complete);
+    }
+
+    @Override
+    public synchronized void release() {
+        entries.clear();
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String contentType;
+        final boolean complete;
+
+        Entry(long size, long modified, String contentType, boolean complete) {
+            this.size = size;
+            this.modified = modified;
+            this.contentType = contentType;
+            this.complete = complete;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package io.fileman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+
+/**
+ * 边传输边计算摘要的文件通道，包装完整下载时的文件通道，按顺序读过的内容顺便计算摘要，
+ * 关闭时如果整个文件都按顺序读过并且期间没有变化则记录到摘要存储中，下一次请求就能返回 Digest 头。
+ * 读取不连续、使用内存映射或者没有读完时放弃计算。为了计算摘要 transferTo 改为经过缓冲区拷贝，不再零拷贝。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class DigestingFileChannel extends FileChannel {
+    private final FileChannel channel;
+    private final File file;
+    private final BasicFileAttributes attributes;
+    private final Digests digests;
+    private final MessageDigest md = Digests.newDigest();
+    /**
+     * 已经按顺序计算到的位置
+     */
+    private long digested;
+    private boolean abandoned;
+
+    DigestingFileChannel(FileChannel channel, File file, BasicFileAttributes attributes, Digests digests) {
+        this.channel = channel;
+        this.file = file;
+        this.attributes = attributes;
+        this.digests = digests;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        long position = channel.position();
+        int start = dst.position();
+        int len = channel.read(dst);
+        update(dst, start, len, position);
+        return len;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (!dsts[i].hasRemaining()) continue;
+            int len = read(dsts[i]);
+            if (len < 0) return total > 0 ? total : -1;
+            total += len;
+            if (dsts[i].hasRemaining()) break;
+        }
+        return total;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        int start = dst.position();
+        int len = channel.read(dst, position);
+        update(dst, start, len, position);
+        return len;
+    }
+
+    private synchronized void update(ByteBuffer dst, int start, int len, long position) {
+        if (abandoned || len <= 0 || position + len <= digested) return;
+        if (position > digested) {
+            abandoned = true;
+            return;
+        }
+        ByteBuffer view = dst.duplicate();
+        view.limit(start + len);
+        view.position(start + (int) (digested - position));
+        md.update(view);
+        digested = position + len;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(count, 1024 * 64));
+        long transferred = 0;
+        while (transferred < count) {
+            buf.clear();
+            if (count - transferred < buf.capacity()) buf.limit((int) (count - transferred));
+            int len = read(buf, position + transferred);
+            if (len <= 0) break;
+            buf.flip();
+            while (buf.hasRemaining()) target.write(buf);
+            transferred += len;
+        }
+        return transferred;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return channel.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        channel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        channel.force(metaData);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        synchronized (this) {
+            abandoned = true;
+        }
+        return channel.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        return channel.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        return channel.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        channel.close();
+        byte[] digest;
+        synchronized (this) {
+            if (abandoned || digested != attributes.size()) return;
+            digest = md.digest();
+        }
+        // 传输期间文件发生变化时不记录
+        BasicFileAttributes after = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        if (after.size() != attributes.size() || !after.lastModifiedTime().equals(attributes.lastModifiedTime())) return;
+        digests.put(file, attributes, digest);
+    }
+
+}
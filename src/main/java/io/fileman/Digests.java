@@ -0,0 +1,373 @@
+package io.fileman;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文件 SHA-256 摘要存储，以文件路径、大小及最后修改时间为键缓存在内存中，
+ * 配置了存储目录时同时以旁路文件的形式持久化，文件变化后摘要自动失效。
+ * 摘要在上传时边写边计算，下载时通过 RFC 3230 的 Digest 头返回，避免重复读取文件。
+ * 配置了后台线程时，没有记录的文件可以交给后台线程按限定的读取带宽计算，计算好之前由调用方自行降级。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Digests implements Releasable {
+    /**
+     * RFC 3230 / RFC 5843 中的算法名称
+     */
+    public static final String ALGORITHM = "SHA-256";
+    private static final int MAGIC = 0x53484132;
+    private static final int VERSION = 1;
+    /**
+     * 请求范围的共享属性名，列表中有文件的摘要还在后台计算时设置，这样的列表不应该缓存
+     */
+    public static final String PENDING = Digests.class.getName() + ".pending";
+
+    private final int capacity;
+    private final Sidecars sidecars;
+    private final Map<String, Record> records = new LinkedHashMap<>(16, 0.75f, true);
+    private final long bandwidth;
+    private final ExecutorService hasher;
+    private final Set<String> pending = new HashSet<>();
+    /**
+     * 后台计算下一次可以读取的时间，单位纳秒，所有后台线程共享读取带宽
+     */
+    private long available;
+
+    /**
+     * @param capacity  内存中最多缓存的摘要数量
+     * @param directory 旁路摘要文件目录，为 null 时不持久化
+     */
+    public Digests(int capacity, File directory) {
+        this(capacity, directory, 0, 0L);
+    }
+
+    /**
+     * @param capacity  内存中最多缓存的摘要数量，同时也是后台等待计算的文件数量上限
+     * @param directory 旁路摘要文件目录，为 null 时不持久化
+     * @param threads   后台计算摘要的线程数，为 0 时不在后台计算
+     * @param bandwidth 后台计算摘要的总读取带宽，单位字节每秒，为 0 时不限制
+     */
+    public Digests(int capacity, File directory, int threads, long bandwidth) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+        if (threads < 0) throw new IllegalArgumentException("threads must not be negative");
+        if (bandwidth < 0) throw new IllegalArgumentException("bandwidth must not be negative");
+        this.capacity = capacity;
+        this.sidecars = new Sidecars(directory, ".sha256", MAGIC, VERSION);
+        this.bandwidth = bandwidth;
+        // 队列满时放弃计算，下次查询时再提交，请求线程不会被拖慢
+        this.hasher = threads > 0 ? new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, capacity)), new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fileman-digest-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }) : null;
+    }
+
+    /**
+     * @return 新的 SHA-256 摘要计算器
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 获取文件当前版本的摘要
+     *
+     * @param file       文件
+     * @param attributes 文件属性
+     * @return 摘要，没有记录或者文件已经变化时返回{@code null}
+     */
+    public byte[] digestOf(File file, BasicFileAttributes attributes) {
+        String key = keyOf(file);
+        Record record;
+        synchronized (this) {
+            record = records.get(key);
+        }
+        if (record == null) record = load(key);
+        if (record == null || record.size != attributes.size() || record.modified != attributes.lastModifiedTime().toMillis()) return null;
+        cache(key, record);
+        return record.digest.clone();
+    }
+
+    /**
+     * 获取文件当前版本的摘要，没有记录时交给后台线程计算，不会阻塞调用方。
+     * 没有持久化并且内存中的摘要已满时不再提交计算。
+     *
+     * @param file       文件
+     * @param attributes 文件属性
+     * @return 摘要，还没有计算好时返回{@code null}
+     */
+    public byte[] lookup(final File file, BasicFileAttributes attributes) {
+        byte[] digest = digestOf(file, attributes);
+        if (digest != null || !isHashing() || !attributes.isRegularFile()) return digest;
+        final String key = keyOf(file);
+        synchronized (pending) {
+            if (!pending.add(key)) return null;
+        }
+        try {
+            hasher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compute(file, true);
+                    } catch (IOException e) {
+                        // 文件不可读或已经删除，下次查询时重试
+                    } finally {
+                        synchronized (pending) {
+                            pending.remove(key);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (pending) {
+                pending.remove(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 没有持久化时内存中的摘要已满就不再后台计算，否则新算出的摘要会挤掉旧的，
+     * 文件数量超过容量的目录会一直重复计算下去
+     *
+     * @return 是否会在后台计算
+     */
+    public boolean isHashing() {
+        if (hasher == null) return false;
+        if (sidecars.isPersistent()) return true;
+        synchronized (this) {
+            return records.size() < capacity;
+        }
+    }
+
+    /**
+     * 获取文件当前版本的摘要，没有记录时读取文件计算并记录
+     *
+     * @param file 文件
+     * @return 摘要
+     * @throws IOException I/O 异常
+     */
+    public byte[] compute(File file) throws IOException {
+        return compute(file, false);
+    }
+
+    private byte[] compute(File file, boolean throttled) throws IOException {
+        Path path = file.toPath();
+        BasicFileAttributes before = Files.readAttributes(path, BasicFileAttributes.class);
+        byte[] digest = digestOf(file, before);
+        if (digest != null) return digest;
+        digest = hash(path, throttled);
+        // 计算期间文件发生变化时不记录
+        BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class);
+        if (after.size() == before.size() && after.lastModifiedTime().equals(before.lastModifiedTime())) put(file, after, digest);
+        return digest;
+    }
+
+    /**
+     * 读取文件计算摘要，不查询也不记录，用于还没有放到最终位置的临时文件
+     *
+     * @param file 文件
+     * @return 摘要
+     * @throws IOException I/O 异常
+     */
+    public byte[] hash(File file) throws IOException {
+        return hash(file.toPath(), false);
+    }
+
+    private byte[] hash(Path path, boolean throttled) throws IOException {
+        MessageDigest md = newDigest();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024 * 64);
+            int n;
+            while ((n = channel.read(buffer)) >= 0) {
+                if (throttled) throttle(n);
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        }
+        return md.digest();
+    }
+
+    /**
+     * 限制后台计算的读取带宽，按读取的字节数推迟下一次读取，空闲的时间不累积
+     */
+    private void throttle(int bytes) throws InterruptedIOException {
+        if (bandwidth <= 0 || bytes <= 0) return;
+        long wait;
+        synchronized (pending) {
+            long now = System.nanoTime();
+            if (available - now < 0) available = now;
+            available += bytes * 1000000000L / bandwidth;
+            wait = available - now;
+        }
+        if (wait <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("digest computation interrupted");
+        }
+    }
+
+    /**
+     * 记录文件当前版本的摘要
+     *
+     * @param file       文件
+     * @param attributes 计算摘要时的文件属性
+     * @param digest     摘要
+     */
+    public void put(File file, BasicFileAttributes attributes, byte[] digest) {
+        String key = keyOf(file);
+        Record record = new Record(attributes.size(), attributes.lastModifiedTime().toMillis(), digest.clone());
+        cache(key, record);
+        store(key, record);
+    }
+
+    /**
+     * 记录文件当前版本的摘要
+     *
+     * @param file   文件
+     * @param digest 摘要
+     * @throws IOException I/O 异常
+     */
+    public void put(File file, byte[] digest) throws IOException {
+        put(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class), digest);
+    }
+
+    /**
+     * @param digest 摘要
+     * @return Digest 头的值，如 SHA-256=base64
+     */
+    public static String headerOf(byte[] digest) {
+        return ALGORITHM + "=" + Base64.encodeBase64String(digest);
+    }
+
+    /**
+     * 从 Digest 头中解析出 SHA-256 摘要
+     *
+     * @param value Digest 头的值，如 SHA-256=base64, MD5=base64
+     * @return 摘要，没有 SHA-256 摘要时返回{@code null}
+     * @throws IllegalArgumentException SHA-256 摘要格式不正确
+     */
+    public static byte[] parse(String value) {
+        if (value == null) return null;
+        for (String instance : value.split(",")) {
+            int index = instance.indexOf('=');
+            if (index < 0 || !ALGORITHM.equalsIgnoreCase(instance.substring(0, index).trim())) continue;
+            String encoded = instance.substring(index + 1).trim();
+            byte[] digest = Base64.decodeBase64(encoded);
+            // 解码会忽略非法字符和填充之后的内容，只接受规范的编码
+            if (digest.length != 32 || !encoded.equals(Base64.encodeBase64String(digest))) throw new IllegalArgumentException("illegal " + ALGORITHM + " digest: " + encoded);
+            return digest;
+        }
+        return null;
+    }
+
+    /**
+     * 判断 Want-Digest 头是否要求 SHA-256 摘要
+     *
+     * @param value Want-Digest 头的值，如 SHA-256;q=1, MD5;q=0.5
+     * @return 是否要求
+     */
+    public static boolean wants(String value) {
+        if (value == null) return false;
+        for (String want : value.split(",")) {
+            String[] parameters = want.split(";");
+            if (!ALGORITHM.equalsIgnoreCase(parameters[0].trim())) continue;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().toLowerCase(Locale.ENGLISH);
+                if (parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static String keyOf(File file) {
+        return file.toPath().toAbsolutePath().normalize().toString();
+    }
+
+    private synchronized void cache(String key, Record record) {
+        records.put(key, record);
+        Iterator<Record> iterator = records.values().iterator();
+        while (records.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private Record load(String key) {
+        return sidecars.load(key, new Sidecars.Decoder<Record>() {
+            @Override
+            public Record decode(DataInputStream in) throws IOException {
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] digest = new byte[in.readUnsignedByte()];
+                in.readFully(digest);
+                return new Record(size, modified, digest);
+            }
+        });
+    }
+
+    private void store(String key, final Record record) {
+        sidecars.store(key, new Sidecars.Encoder() {
+            @Override
+            public void encode(DataOutputStream out) throws IOException {
+                out.writeLong(record.size);
+                out.writeLong(record.modified);
+                out.writeByte(record.digest.length);
+                out.write(record.digest);
+            }
+        });
+    }
+
+    /**
+     * 清空内存中的摘要
+     */
+    public synchronized void clear() {
+        records.clear();
+    }
+
+    @Override
+    public void release() {
+        if (hasher != null) hasher.shutdownNow();
+        clear();
+    }
+
+    private static class Record {
+        private final long size;
+        private final long modified;
+        private final byte[] digest;
+
+        Record(long size, long modified, byte[] digest) {
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+    }
+}
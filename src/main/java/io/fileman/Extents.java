@@ -0,0 +1,86 @@
+package io.fileman;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 区间集合，记录已经接收的字节区间，相邻或重叠的区间会合并，所以按顺序上传时始终只有一个区间。
+ * 非线程安全，由调用方同步。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Extents {
+    /**
+     * 区间起始下标（包含）到结束下标（不包含）
+     */
+    private final TreeMap<Long, Long> extents = new TreeMap<>();
+
+    /**
+     * 添加区间
+     *
+     * @param start 起始下标，包含
+     * @param end   结束下标，不包含
+     */
+    public void add(long start, long end) {
+        if (start < 0 || end < start) throw new IllegalArgumentException("invalid extent: [" + start + ", " + end + ")");
+        if (start == end) return;
+        Map.Entry<Long, Long> floor = extents.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+            extents.remove(floor.getKey());
+        }
+        Map.Entry<Long, Long> next = extents.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            extents.remove(next.getKey());
+            next = extents.ceilingEntry(start);
+        }
+        extents.put(start, end);
+    }
+
+    /**
+     * @param length 总长度
+     * @return 是否已经覆盖 [0, length)
+     */
+    public boolean covers(long length) {
+        if (length == 0) return true;
+        return extents.size() == 1 && extents.firstKey() == 0 && extents.firstEntry().getValue() >= length;
+    }
+
+    /**
+     * @param position 位置
+     * @return 从该位置开始连续覆盖到的结束下标（不包含），该位置没有被覆盖时返回该位置本身
+     */
+    public long endOf(long position) {
+        Map.Entry<Long, Long> floor = extents.floorEntry(position);
+        return floor != null && floor.getValue() > position ? floor.getValue() : position;
+    }
+
+    /**
+     * @return 区间内的字节总数
+     */
+    public long size() {
+        long size = 0;
+        for (Map.Entry<Long, Long> extent : extents.entrySet()) size += extent.getValue() - extent.getKey();
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return extents.isEmpty();
+    }
+
+    /**
+     * @return 以 START-END[,START-END] 表示的区间，结束下标包含在内，与 Range 头的格式一致
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Long, Long> extent : extents.entrySet()) {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(extent.getKey()).append('-').append(extent.getValue() - 1);
+        }
+        return builder.toString();
+    }
+}
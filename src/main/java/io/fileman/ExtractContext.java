@@ -11,13 +11,35 @@ import java.io.File;
  * 2018/9/17
  */
 public class ExtractContext extends ActionContext {
+    private final Transmitter transmitter;
+    private final ChannelCache channels;
 
     public ExtractContext(ActionContext context) {
         super(context);
+        this.transmitter = context instanceof ExtractContext ? ((ExtractContext) context).transmitter : null;
+        this.channels = context instanceof ExtractContext ? ((ExtractContext) context).channels : null;
     }
 
     public ExtractContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response) {
-        super(root, configuration, request, response);
+        this(root, configuration, request, response, null, null, null);
+    }
+
+    public ExtractContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, Transmitter transmitter, ChannelCache channels, Charsets charsets) {
+        this(root, configuration, request, response, transmitter, channels, charsets, null);
+    }
+
+    public ExtractContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, Transmitter transmitter, ChannelCache channels, Charsets charsets, ContentTypes contentTypes) {
+        super(root, configuration, request, response, charsets, contentTypes);
+        this.transmitter = transmitter;
+        this.channels = channels;
+    }
+
+    public Transmitter getTransmitter() {
+        return transmitter;
+    }
+
+    public ChannelCache getChannels() {
+        return channels;
     }
 
 }
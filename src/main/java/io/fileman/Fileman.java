@@ -1,5 +1,7 @@
 package io.fileman;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +17,9 @@ public class Fileman {
     private boolean folder;
     private Map<String, Object> properties;
     private List<Fileman> children;
+    private Integer total;
+    private String next;
+    private String error;
 
     public String getUri() {
         return uri;
@@ -55,4 +60,34 @@ public class Fileman {
     public void setChildren(List<Fileman> children) {
         this.children = children;
     }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getTotal() {
+        return total;
+    }
+
+    public void setTotal(Integer total) {
+        this.total = total;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    /**
+     * @return 上传失败的原因，只出现在上传结果中
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
 }
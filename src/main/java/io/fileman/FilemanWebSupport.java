@@ -1,6 +1,8 @@
 package io.fileman;
 
+import io.fileman.follow.Follower;
 import io.fileman.formatter.HtmlFormatter;
+import io.fileman.transmitter.AsyncTransmitter;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -10,10 +12,13 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 文件管理器WEB集成
@@ -27,6 +32,20 @@ public class FilemanWebSupport implements Interceptor {
     protected Synthesizer<Converter> synthesizer;
     protected Formatter formatter;
     protected int buffer;
+    protected int uploadBuffer;
+    protected Transmitter transmitter;
+    protected ChannelCache channels;
+    protected Listings listings;
+    protected ListingCache listingCache;
+    protected Uploads uploads;
+    protected Digests digests;
+    protected ExecutorService executor;
+    protected int parallelism;
+    protected ExecutorService uploadExecutor;
+    protected int uploadParallelism;
+    protected Follower follower;
+    protected Charsets charsets;
+    protected ContentTypes contentTypes;
     protected List<Converter> converters = new ArrayList<>();
     protected List<Extractor> extractors = new ArrayList<>();
     protected List<Interceptor> interceptors = new ArrayList<>();
@@ -37,11 +56,135 @@ public class FilemanWebSupport implements Interceptor {
         synthesizer = Toolkit.newInstance(Toolkit.ifBlank(configuration.valueOf("synthesizer"), RenderSynthesizer.class.getName()));
         formatter = Toolkit.newInstance(Toolkit.ifBlank(configuration.valueOf("formatter"), HtmlFormatter.class.getName()));
         buffer = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("buffer"), "" + 1024 * 8));
+        uploadBuffer = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("upload-buffer"), "" + 1024 * 64));
+        initContentTypes(configuration);
+        channels = new ChannelCache(Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("channel-cache-size"), "64")), contentTypes);
+        initExecutor(configuration);
+        listings = new Listings(Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("snapshot-cache-size"), "16")));
+        int listingCacheSize = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("listing-cache-size"), "256"));
+        long listingCacheBytes = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("listing-cache-bytes"), "" + 32 * 1024 * 1024));
+        long listingCacheEntryBytes = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("listing-cache-entry-bytes"), "" + 256 * 1024));
+        boolean listingCacheWatch = Boolean.valueOf(Toolkit.ifBlank(configuration.valueOf("listing-cache-watch"), "true"));
+        long listingCacheRevalidate = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("listing-cache-revalidate"), "" + 5 * 1000));
+        listingCache = new ListingCache(listingCacheSize, listingCacheBytes, listingCacheEntryBytes, listingCacheWatch, listingCacheRevalidate);
+        long uploadTimeout = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("upload-timeout"), "" + 24 * 60 * 60 * 1000));
+        uploads = new Uploads(uploadTimeout, uploadBuffer);
+        int digestCacheSize = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("digest-cache-size"), "4096"));
+        String digestLocation = configuration.valueOf("digest-store-location");
+        int digestThreads = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("digest-threads"), "0"));
+        long digestBandwidth = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("digest-bandwidth"), "" + 16 * 1024 * 1024));
+        digests = new Digests(digestCacheSize, Toolkit.isBlank(digestLocation) ? null : new File(digestLocation), digestThreads, digestBandwidth);
+        long interval = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("follow-interval"), "1000"));
+        int backlog = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("follow-backlog"), "" + 1024 * 1024));
+        long followTimeout = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("follow-timeout"), "" + 60 * 1000));
+        follower = new Follower(interval, backlog, followTimeout);
+        initTransmitter(configuration);
+        initCharsets(configuration);
         initConverters(configuration);
         initExtractors(configuration);
         initInterceptors(configuration);
     }
 
+    private void initTransmitter(Configuration configuration) throws ServletException {
+        Map<String, Transmitter> map = new LinkedHashMap<>();
+        for (Transmitter transmitter : ServiceLoader.load(Transmitter.class)) {
+            map.put(transmitter.name(), transmitter);
+        }
+        String name = Toolkit.ifBlank(configuration.valueOf("transmitter"), "channel");
+        Transmitter transmitter = map.get(name);
+        if (transmitter == null) throw new ServletException("unknown transmitter named " + name);
+        try {
+            if (transmitter instanceof Initialable) ((Initialable) transmitter).initialize(configuration);
+            if (Boolean.valueOf(configuration.valueOf("async"))) {
+                AsyncTransmitter async = new AsyncTransmitter(transmitter);
+                async.initialize(configuration);
+                transmitter = async;
+            }
+            this.transmitter = transmitter;
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
+
+    private void initExecutor(Configuration configuration) {
+        int threads = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("synthesize-threads"), "0"));
+        if (threads > 0) {
+            parallelism = Math.max(1, Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("synthesize-parallelism"), "" + threads)));
+            executor = newExecutor(threads, "fileman-synthesize-");
+        }
+        int uploadThreads = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("upload-threads"), "0"));
+        if (uploadThreads > 0) {
+            uploadParallelism = Math.max(1, Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("upload-parallelism"), "" + uploadThreads)));
+            uploadExecutor = newExecutor(uploadThreads, "fileman-upload-");
+        }
+    }
+
+    /**
+     * 创建有界线程池，队列满时由提交任务的请求线程自己执行，从而限制单个请求占用的资源。
+     *
+     * @param threads 线程数
+     * @param prefix  线程名称前缀
+     * @return 线程池
+     */
+    private static ExecutorService newExecutor(int threads, final String prefix) {
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads * 4), new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private void initContentTypes(Configuration configuration) throws ServletException {
+        Map<String, ContentTypeDetector> map = new LinkedHashMap<>();
+        for (ContentTypeDetector detector : ServiceLoader.load(ContentTypeDetector.class)) {
+            map.put(detector.name(), detector);
+        }
+        String value = configuration.valueOf("content-type-detectors");
+        Iterable<String> names = Toolkit.isBlank(value) ? map.keySet() : Arrays.asList(value.split(SPLIT_DELIMIT_REGEX));
+        List<ContentTypeDetector> detectors = new ArrayList<>();
+        for (String name : names) {
+            try {
+                ContentTypeDetector detector = map.get(name);
+                if (detector instanceof Initialable) ((Initialable) detector).initialize(configuration);
+                detectors.add(detector);
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+        }
+        int capacity = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("content-type-cache-size"), "4096"));
+        // 列表中的文件类型缺省不打开文件判断
+        boolean sniffing = Boolean.valueOf(configuration.valueOf("content-type-sniffing"));
+        contentTypes = new ContentTypes(detectors, capacity, sniffing);
+    }
+
+    private void initCharsets(Configuration configuration) throws ServletException {
+        Map<String, CharsetDetector> map = new LinkedHashMap<>();
+        for (CharsetDetector detector : ServiceLoader.load(CharsetDetector.class)) {
+            map.put(detector.name(), detector);
+        }
+        String value = configuration.valueOf("charset-detectors");
+        Iterable<String> names = Toolkit.isBlank(value) ? map.keySet() : Arrays.asList(value.split(SPLIT_DELIMIT_REGEX));
+        List<CharsetDetector> detectors = new ArrayList<>();
+        for (String name : names) {
+            try {
+                CharsetDetector detector = map.get(name);
+                if (detector instanceof Initialable) ((Initialable) detector).initialize(configuration);
+                detectors.add(detector);
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+        }
+        int sniff = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("charset-sniff-size"), "" + 1024 * 64));
+        int capacity = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("charset-cache-size"), "1024"));
+        String fallback = Toolkit.ifBlank(configuration.valueOf("charset-default"), "GBK");
+        charsets = new Charsets(detectors, sniff, capacity, fallback);
+    }
+
     private void initConverters(Configuration configuration) throws ServletException {
         converters.clear();
         Map<String, Converter> map = new LinkedHashMap<>();
@@ -58,7 +201,8 @@ public class FilemanWebSupport implements Interceptor {
         Iterable<String> names = Toolkit.isBlank(value) ? map.keySet() : Arrays.asList(value.split(SPLIT_DELIMIT_REGEX));
         for (String name : names) {
             try {
-                Converter converter = map.get(name);
+                // 没有注册的转换器可以用类名配置，例如需要显式开启的 io.fileman.adapter.DigestETagAdapter
+                Converter converter = map.containsKey(name) ? map.get(name) : Toolkit.<Converter>newInstance(name);
                 if (converter instanceof Initialable) ((Initialable) converter).initialize(configuration);
                 converters.add(converter);
             } catch (Exception e) {
@@ -149,6 +293,373 @@ public class FilemanWebSupport implements Interceptor {
         }
     }
 
+    /**
+     * 按请求的字段筛选转换器，只能从配置的转换器中选择，未被选中的转换器不会被调用。
+     *
+     * @param fields 逗号分隔的转换器名称，为{@code null}时使用全部配置的转换器
+     * @return 本次请求使用的转换器
+     * @throws IllegalArgumentException 字段不存在或没有配置时
+     */
+    protected List<Converter> projectionOf(String fields) throws IllegalArgumentException {
+        if (fields == null) return converters;
+        List<Converter> projection = new ArrayList<>();
+        for (String name : fields.split(SPLIT_DELIMIT_REGEX)) {
+            if (Toolkit.isBlank(name)) continue;
+            Converter converter = null;
+            for (int i = 0; converter == null && i < converters.size(); i++) {
+                if (name.trim().equals(converters.get(i).name())) converter = converters.get(i);
+            }
+            if (converter == null) throw new IllegalArgumentException("unknown field: " + name);
+            if (!projection.contains(converter)) projection.add(converter);
+        }
+        return projection;
+    }
+
+    /**
+     * 格式化输出目录及其子文件，流式格式化器边合成边输出，否则合成全部子文件后再输出。
+     *
+     * @param fileman       目录
+     * @param paths         子文件
+     * @param context       合成上下文
+     * @param formatContext 格式化上下文
+     * @return 包含全部子文件的目录，用于放入缓存，如果没有输出或者超出缓存上限则返回{@code null}
+     * @throws IOException I/O 异常
+     */
+    protected Fileman format(final Fileman fileman, Iterable<Path> paths, SynthesizeContext<Converter> context, final FormatContext formatContext) throws IOException {
+        FormatStream stream;
+        if (formatter instanceof StreamFormatter) {
+            stream = ((StreamFormatter) formatter).open(fileman, formatContext);
+            if (stream == null) return null;
+        } else {
+            fileman.setChildren(new ArrayList<Fileman>());
+            stream = new FormatStream() {
+                @Override
+                public void write(Fileman child) {
+                    fileman.getChildren().add(child);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    formatter.format(fileman, formatContext);
+                }
+            };
+        }
+        CollectingFormatStream collecting = new CollectingFormatStream(stream, fileman);
+        stream = collecting;
+        boolean concurrent = false;
+        for (Converter converter : context.getConverters()) concurrent |= converter instanceof ThreadSafe;
+        if (executor != null && concurrent && synthesizer instanceof ThreadSafe) {
+            synthesize(fileman, paths, context, stream);
+        } else {
+            for (Path path : paths) {
+                Fileman child = synthesize(fileman, path.toFile(), context);
+                if (child != null) stream.write(child);
+            }
+        }
+        stream.close();
+        return collecting.collected();
+    }
+
+    /**
+     * 输出缓存的目录
+     *
+     * @param cached        缓存的目录
+     * @param formatContext 格式化上下文
+     * @throws IOException I/O 异常
+     */
+    protected void format(Fileman cached, FormatContext formatContext) throws IOException {
+        if (formatter instanceof StreamFormatter) {
+            FormatStream stream = ((StreamFormatter) formatter).open(cached, formatContext);
+            if (stream == null) return;
+            for (Fileman child : cached.getChildren()) stream.write(child);
+            stream.close();
+        } else {
+            formatter.format(cached, formatContext);
+        }
+    }
+
+    /**
+     * 边输出边收集子文件，估算的内存占用超出单个缓存项的上限时不再收集。
+     */
+    private class CollectingFormatStream implements FormatStream {
+        private final FormatStream stream;
+        private final Fileman fileman;
+        private List<Fileman> children = new ArrayList<>();
+        private long size;
+
+        CollectingFormatStream(FormatStream stream, Fileman fileman) {
+            this.stream = stream;
+            this.fileman = fileman;
+            this.size = ListingCache.sizeOf(fileman);
+        }
+
+        @Override
+        public void write(Fileman child) throws IOException {
+            stream.write(child);
+            if (children == null) return;
+            size += 8L + ListingCache.sizeOf(child);
+            if (size <= listingCache.getEntryLimit()) children.add(child);
+            else children = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+
+        Fileman collected() {
+            if (children == null) return null;
+            Fileman collected = new Fileman();
+            collected.setUri(fileman.getUri());
+            collected.setPath(fileman.getPath());
+            collected.setFolder(fileman.isFolder());
+            collected.setProperties(fileman.getProperties());
+            collected.setChildren(Collections.unmodifiableList(children));
+            collected.setTotal(fileman.getTotal());
+            collected.setNext(fileman.getNext());
+            return collected;
+        }
+    }
+
+    /**
+     * 缓存目录列表，能够完整捕获格式化结果时缓存格式化好的内容并带上强 ETag 输出，否则缓存合成好的目录。
+     * 格式化器提前刷新过回应时捕获的内容已经输出，只缓存不再输出。
+     *
+     * @param stamp     合成之前的目录状态
+     * @param variant   列表变体
+     * @param collected 包含全部子文件的目录
+     * @param captured  捕获输出内容的回应
+     * @param context   合成上下文
+     * @param request   请求
+     * @param response  回应
+     * @throws IOException I/O 异常
+     */
+    protected void cache(ListingCache.Stamp stamp, String variant, Fileman collected, CapturedResponse captured, ActionContext context, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        byte[] body = captured != null ? captured.finish() : null;
+        // 有文件的摘要还在后台计算时列表中是降级的内容，不缓存
+        boolean pending = context.getAttribute(Digests.PENDING) != null;
+        if (body != null) {
+            Serialized serialized = new Serialized(body, captured.getContentType(), stamp.getTime());
+            if (pending) listingCache.discard(stamp);
+            else listingCache.put(stamp, variant, serialized);
+            // 提前刷新过的内容已经输出，缓存后由之后的请求带上 ETag
+            if (!captured.isFlushed()) send(serialized, request, response);
+        } else if (collected != null && !pending) {
+            listingCache.put(stamp, variant, collected, ListingCache.sizeOf(collected));
+        } else {
+            listingCache.discard(stamp);
+        }
+    }
+
+    /**
+     * 输出格式化好的目录，支持 If-None-Match 及 If-Modified-Since 条件请求，未变化时回应 304 Not Modified。
+     *
+     * @param serialized 格式化好的目录
+     * @param request    请求
+     * @param response   回应
+     * @throws IOException I/O 异常
+     */
+    protected void send(Serialized serialized, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader("ETag", serialized.getEtag());
+        response.setDateHeader("Last-Modified", serialized.getModified());
+        boolean modified;
+        String match = request.getHeader("If-None-Match");
+        if (match != null) {
+            modified = true;
+            for (String tag : match.split("\\s*,\\s*")) {
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(serialized.getEtag())) modified = false;
+            }
+        } else {
+            long since;
+            try {
+                since = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                since = -1L;
+            }
+            modified = since < 0 || serialized.getModified() / 1000L > since / 1000L;
+        }
+        if (!modified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = serialized.getBody();
+        response.setContentType(serialized.getContentType());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * 并行合成子文件，线程安全的转换器在线程池中执行，其余转换器在请求线程中串行补充，输出顺序与子文件顺序一致。
+     * 每个请求同时合成中的子文件不超过 synthesize-parallelism 个，线程池饱和时由请求线程自己合成。
+     *
+     * @param parent  所在目录
+     * @param paths   子文件
+     * @param context 合成上下文
+     * @param stream  格式化输出流
+     * @throws IOException I/O 异常
+     */
+    protected void synthesize(final Fileman parent, Iterable<Path> paths, SynthesizeContext<Converter> context, FormatStream stream) throws IOException {
+        final List<Converter> converters = context.getConverters();
+        List<Converter> concurrent = new ArrayList<>();
+        for (Converter converter : converters) if (converter instanceof ThreadSafe) concurrent.add(converter);
+        final SynthesizeContext<Converter> shared = new SynthesizeContext<>(context, concurrent);
+        final boolean serial = concurrent.size() < converters.size();
+        // 有非线程安全的转换器时每个转换器单独合成，再按转换器顺序合并各自的结果，不依赖属性的个数及顺序
+        final List<SynthesizeContext<Converter>> singles = new ArrayList<>();
+        for (int i = 0; serial && i < converters.size(); i++) singles.add(new SynthesizeContext<>(context, Collections.singletonList(converters.get(i))));
+        LinkedList<Future<Synthesis>> window = new LinkedList<>();
+        try {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext() || !window.isEmpty()) {
+                if (iterator.hasNext() && window.size() < parallelism) {
+                    final File sub = iterator.next().toFile();
+                    window.add(executor.submit(new Callable<Synthesis>() {
+                        @Override
+                        public Synthesis call() throws Exception {
+                            BasicFileAttributes attributes;
+                            try {
+                                attributes = ActionContext.snapshot(sub);
+                            } catch (IOException e) {
+                                return null;
+                            }
+                            if (!serial) return new Synthesis(sub, attributes, synthesize(parent, sub, attributes, shared), null);
+                            List<Map<String, Object>> parts = new ArrayList<>(converters.size());
+                            for (int i = 0; i < converters.size(); i++) {
+                                parts.add(converters.get(i) instanceof ThreadSafe ? synthesizer.synthesize(sub, new SynthesizeContext<>(singles.get(i), sub, attributes)) : null);
+                            }
+                            return new Synthesis(sub, attributes, childOf(parent, sub, attributes), parts);
+                        }
+                    }));
+                    continue;
+                }
+                Synthesis synthesis = await(window.removeFirst());
+                if (synthesis == null) continue;
+                Fileman child = synthesis.child;
+                if (serial) {
+                    Map<String, Object> properties = new LinkedHashMap<>();
+                    for (int i = 0; i < converters.size(); i++) {
+                        Map<String, Object> part = synthesis.parts.get(i);
+                        if (part == null) part = synthesizer.synthesize(synthesis.file, new SynthesizeContext<>(singles.get(i), synthesis.file, synthesis.attributes));
+                        properties.putAll(part);
+                    }
+                    child.setProperties(properties);
+                }
+                stream.write(child);
+            }
+        } finally {
+            for (Future<Synthesis> future : window) future.cancel(true);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 合成子文件，每个子文件只读取一次属性，所有转换器共享该快照
+     *
+     * @param parent  所在目录
+     * @param sub     子文件
+     * @param context 合成上下文
+     * @return 子文件，如果子文件在列举之后被删除则返回{@code null}
+     * @throws IOException I/O 异常
+     */
+    protected Fileman synthesize(Fileman parent, File sub, SynthesizeContext<Converter> context) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = ActionContext.snapshot(sub);
+        } catch (IOException e) {
+            return null;
+        }
+        return synthesize(parent, sub, attributes, context);
+    }
+
+    /**
+     * 根据属性快照合成子文件
+     *
+     * @param parent     所在目录
+     * @param sub        子文件
+     * @param attributes 子文件属性快照
+     * @param context    合成上下文
+     * @return 子文件
+     * @throws IOException I/O 异常
+     */
+    protected Fileman synthesize(Fileman parent, File sub, BasicFileAttributes attributes, SynthesizeContext<Converter> context) throws IOException {
+        Fileman child = childOf(parent, sub, attributes);
+        Map<String, Object> properties = synthesizer.synthesize(sub, new SynthesizeContext<>(context, sub, attributes));
+        child.setProperties(properties);
+        return child;
+    }
+
+    /**
+     * 创建还没有属性的子文件
+     *
+     * @param parent     所在目录
+     * @param sub        子文件
+     * @param attributes 子文件属性快照
+     * @return 子文件
+     */
+    private static Fileman childOf(Fileman parent, File sub, BasicFileAttributes attributes) {
+        Fileman child = new Fileman();
+        // 目录的 URI 已经规范化，文件名不包含分隔符，不需要再逐个规范化
+        String name = sub.getName();
+        String uri = parent.getUri();
+        child.setUri(uri.endsWith("/") ? uri + name : uri + "/" + name);
+        child.setPath(parent.getPath() + "/" + name);
+        child.setFolder(attributes.isDirectory());
+        return child;
+    }
+
+    /**
+     * 并行合成的子文件及其属性快照，用于在请求线程中补充非线程安全转换器的结果。
+     */
+    private static class Synthesis {
+        private final File file;
+        private final BasicFileAttributes attributes;
+        private final Fileman child;
+        /**
+         * 按转换器顺序排列的各个转换器的结果，非线程安全的转换器对应{@code null}，没有非线程安全的转换器时为{@code null}
+         */
+        private final List<Map<String, Object>> parts;
+
+        Synthesis(File file, BasicFileAttributes attributes, Fileman child, List<Map<String, Object>> parts) {
+            this.file = file;
+            this.attributes = attributes;
+            this.child = child;
+            this.parts = parts;
+        }
+    }
+
+    /**
+     * 通过 Digest 头返回文件整体的摘要，范围请求返回的也是整个文件的摘要。
+     * 摘要只来自上传时的计算或之前的记录，GET 请求从不等待计算：没有记录时不返回 Digest 头，
+     * 完整下载由调用方在传输的同时计算，范围请求在客户端通过 Want-Digest 要求时交给后台线程计算。
+     *
+     * @param file       文件
+     * @param attributes 文件属性
+     * @param whole      是否完整下载
+     * @param request    请求
+     * @param response   回应
+     * @return 是否返回了 Digest 头
+     */
+    protected boolean digest(File file, BasicFileAttributes attributes, boolean whole, HttpServletRequest request, HttpServletResponse response) {
+        byte[] digest = whole || !Digests.wants(request.getHeader("Want-Digest")) ? digests.digestOf(file, attributes) : digests.lookup(file, attributes);
+        if (digest != null) response.setHeader("Digest", Digests.headerOf(digest));
+        return digest != null;
+    }
+
     protected void get(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String requestPath = request.getRequestURI();
         String contextPath = request.getContextPath();
@@ -168,24 +679,66 @@ public class FilemanWebSupport implements Interceptor {
             fileman.setUri(("/" + contextPath + "/" + servletPath + "/" + filemanPath).replaceAll("/+", "/"));
             fileman.setPath(filemanPath);
             fileman.setFolder(true);
-            fileman.setChildren(new ArrayList<Fileman>());
-            File[] files = file.listFiles();
-            for (int i = 0; files != null && i < files.length; i++) {
-                File sub = files[i];
-                Fileman child = new Fileman();
-                child.setUri(("/" + contextPath + "/" + servletPath + "/" + filemanPath + "/" + sub.getName()).replaceAll("/+", "/"));
-                child.setPath(filemanPath + "/" + sub.getName());
-                child.setFolder(sub.isDirectory());
-                SynthesizeContext<Converter> context = new SynthesizeContext<>(root, configuration, request, response, converters);
-                Map<String, Object> properties = synthesizer.synthesize(sub, context);
-                child.setProperties(properties);
-                fileman.getChildren().add(child);
+            List<Converter> projection;
+            try {
+                projection = projectionOf(request.getParameter("fields"));
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            String fields = request.getParameter("fields");
+            String sort = request.getParameter("sort");
+            String limit = request.getParameter("limit");
+            String cursor = request.getParameter("cursor");
+            // 同一目录的列表按转换器、格式化器、排序及分页参数区分缓存
+            String variant = formatter.getClass().getName() + "&fields=" + fields + "&sort=" + sort + "&limit=" + limit + "&cursor=" + cursor;
+            ListingCache.Stamp stamp = listingCache.stamp(file);
+            ListingCache.Entry cached = listingCache.get(stamp, variant);
+            if (cached != null) {
+                listingCache.discard(stamp);
+                if (cached.getSerialized() != null) send(cached.getSerialized(), request, response);
+                else format(cached.getFileman(), new FormatContext(root, configuration, request, response));
+                return;
             }
-            SynthesizeContext<Converter> context = new SynthesizeContext<>(root, configuration, request, response, converters);
-            Map<String, Object> properties = synthesizer.synthesize(file, context);
+            // 捕获格式化结果用于缓存及计算 ETag，超出缓存上限时直接输出
+            CapturedResponse captured = listingCache.getEntryLimit() > 0 ? new CapturedResponse(response, (int) Math.min(listingCache.getEntryLimit(), Integer.MAX_VALUE - 8)) : null;
+            FormatContext formatContext = new FormatContext(root, configuration, request, captured != null ? captured : response);
+
+            SynthesizeContext<Converter> context = new SynthesizeContext<>(root, configuration, request, response, projection, charsets, contentTypes, digests);
+            Map<String, Object> properties = synthesizer.synthesize(file, new SynthesizeContext<>(context, file, ActionContext.snapshot(file)));
             fileman.setProperties(properties);
 
-            formatter.format(fileman, new FormatContext(root, configuration, request, response));
+            // 不分页也不排序时按目录本身的顺序边列举边输出
+            if (sort == null && limit == null && cursor == null) {
+                Fileman collected;
+                try (DirectoryStream<Path> paths = Files.newDirectoryStream(file.toPath())) {
+                    collected = format(fileman, paths, context, formatContext);
+                }
+                cache(stamp, variant, collected, captured, context, request, response);
+                return;
+            }
+            // 分页或排序时从目录的有序快照中截取一页，只有这一页的子文件需要重新读取属性
+            Listing listing;
+            int from;
+            int size;
+            try {
+                size = limit == null ? Integer.MAX_VALUE : Integer.valueOf(limit);
+                if (size <= 0) throw new IllegalArgumentException("illegal limit: " + limit);
+                listing = listings.listingOf(file, Order.valueOf(sort));
+                from = listing.indexAfter(cursor);
+            } catch (IllegalArgumentException e) {
+                listingCache.discard(stamp);
+                response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            List<Listing.Entry> entries = listing.getEntries();
+            int to = (int) Math.min((long) from + size, entries.size());
+            List<Path> paths = new ArrayList<>();
+            for (int i = from; i < to; i++) paths.add(file.toPath().resolve(entries.get(i).getName()));
+            fileman.setTotal(entries.size());
+            if (to < entries.size()) fileman.setNext(listing.getOrder().cursorOf(entries.get(to - 1)));
+            Fileman collected = format(fileman, paths, context, formatContext);
+            cache(stamp, variant, collected, captured, context, request, response);
         }
         // 是文件
         else if (file.isFile()) {
@@ -193,10 +746,25 @@ public class FilemanWebSupport implements Interceptor {
             List<String> units = new ArrayList<>();
             for (Extractor extractor : extractors) units.add(extractor.unit());
             response.setHeader("Accept-Ranges", Toolkit.join(units, ", "));
+            // 跟踪文件新追加的行
+            if (request.getParameter("follow") != null) {
+                if (request.isAsyncSupported()) follower.follow(file, charsets.charsetOf(file), request, response);
+                else response.sendError(HttpURLConnection.HTTP_NOT_IMPLEMENTED, "Not Implemented");
+            }
             // 全部读取
-            if (Toolkit.isBlank(range)) {
-                Path path = Paths.get(file.toURI());
-                String contentType = Files.probeContentType(path);
+            else if (Toolkit.isBlank(range)) {
+                BasicFileAttributes attributes = ActionContext.snapshot(file);
+                boolean digested = digest(file, attributes, true, request, response);
+                SharedFileChannel channel = channels.open(file);
+                String contentType;
+                long length;
+                try {
+                    contentType = channel.getContentType();
+                    length = channel.size();
+                } catch (IOException e) {
+                    Toolkit.close(channel);
+                    throw e;
+                }
                 if (contentType == null) contentType = "application/octet-stream";
                 response.setContentType(contentType);
 
@@ -204,24 +772,27 @@ public class FilemanWebSupport implements Interceptor {
                 String contentDisposition = "attachment; filename=\"" + URLEncoder.encode(name, "UTF-8") + "\"";
                 response.setHeader("Content-Disposition", contentDisposition);
 
-                OutputStream out = response.getOutputStream();
-                InputStream in = null;
-                try {
-                    in = new FileInputStream(file);
-                    byte[] buf = new byte[buffer];
-                    int len;
-                    while ((len = in.read(buf)) != -1) out.write(buf, 0, len);
-                } finally {
-                    Toolkit.close(in);
-                }
+                response.setHeader("Content-Length", String.valueOf(length));
+                // 还没有摘要时在传输的同时计算，传输完整个文件后记录
+                FileChannel source = digested ? channel : new DigestingFileChannel(channel, file, attributes, digests);
+                transmitter.transmit(source, Collections.singletonList(new Segment(0, length)), new TransmitContext(new File(root), configuration, request, response));
             }
             // 部分读取
             else {
-                Range r = Range.valueOf(range);
+                Range r;
+                try {
+                    r = Range.valueOf(range);
+                } catch (IllegalArgumentException e) {
+                    response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+                    return;
+                }
                 Extractor extractor = null;
                 for (Extractor e : extractors) if (r.getUnit().equals(e.unit())) extractor = e;
                 if (extractor == null) response.sendError(HttpURLConnection.HTTP_NOT_IMPLEMENTED, "Not Implemented");
-                else extractor.extract(file, r, new ExtractContext(new File(root), configuration, request, response));
+                else {
+                    digest(file, ActionContext.snapshot(file), false, request, response);
+                    extractor.extract(file, r, new ExtractContext(new File(root), configuration, request, response, transmitter, channels, charsets, contentTypes));
+                }
             }
         }
         // 不认识
@@ -253,17 +824,166 @@ public class FilemanWebSupport implements Interceptor {
             response.sendError(HttpURLConnection.HTTP_CONFLICT, "Conflict");
             return;
         }
+        List<Converter> projection;
+        try {
+            projection = projectionOf(request.getParameter("fields"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+            return;
+        }
         // 将文件写入该文件夹
-        for (Part part : parts) {
-            String disposition = part.getHeader("Content-Disposition");
-            String[] segments = disposition.split("\\s*;\\s*");
-            String filename = UUID.randomUUID().toString();
-            for (String segment : segments) {
-                String[] keyValue = segment.split("\\s*=\\s*");
-                if (!"filename".equals(keyValue[0])) continue;
-                filename = Toolkit.unquote(keyValue[1]);
+        List<File> targets = new ArrayList<>(parts.size());
+        for (Part part : parts) targets.add(new File(file, filenameOf(part)));
+        List<String> errors = store(new ArrayList<>(parts), targets);
+
+        // 以配置的格式化器输出每个文件的上传结果
+        File root = new File(this.root);
+        Fileman result = new Fileman();
+        result.setUri(("/" + contextPath + "/" + servletPath + "/" + filemanPath).replaceAll("/+", "/"));
+        result.setPath(filemanPath);
+        result.setFolder(true);
+        SynthesizeContext<Converter> context = new SynthesizeContext<>(root, configuration, request, response, projection, charsets, contentTypes, digests);
+        result.setProperties(synthesizer.synthesize(file, new SynthesizeContext<>(context, file, ActionContext.snapshot(file))));
+        List<Fileman> children = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            File target = targets.get(i);
+            String error = errors.get(i);
+            BasicFileAttributes attributes = null;
+            if (error == null) {
+                try {
+                    attributes = ActionContext.snapshot(target);
+                } catch (IOException e) {
+                    error = e.getClass().getSimpleName();
+                }
+            }
+            if (error == null) {
+                children.add(synthesize(result, target, attributes, context));
+                continue;
+            }
+            String uri = result.getUri();
+            Fileman child = new Fileman();
+            child.setUri(uri.endsWith("/") ? uri + target.getName() : uri + "/" + target.getName());
+            child.setPath(result.getPath() + "/" + target.getName());
+            child.setError(error);
+            children.add(child);
+        }
+        result.setChildren(children);
+        formatter.format(result, new FormatContext(root, configuration, request, response));
+    }
+
+    /**
+     * 获取上传文件的文件名，没有文件名时随机生成
+     *
+     * @param part 上传的部分
+     * @return 文件名
+     */
+    protected String filenameOf(Part part) {
+        String disposition = part.getHeader("Content-Disposition");
+        String[] segments = disposition.split("\\s*;\\s*");
+        String filename = UUID.randomUUID().toString();
+        for (String segment : segments) {
+            String[] keyValue = segment.split("\\s*=\\s*");
+            if (!"filename".equals(keyValue[0])) continue;
+            filename = Toolkit.unquote(keyValue[1]);
+        }
+        return filename;
+    }
+
+    /**
+     * 把上传的各部分分别写入临时文件后重命名为目标文件，配置了上传线程池时并行写入，
+     * 每个请求最多同时写入 upload-parallelism 个文件。
+     *
+     * @param parts   上传的各部分
+     * @param targets 对应的目标文件
+     * @return 对应的上传错误，成功时为{@code null}
+     * @throws IOException I/O 异常
+     */
+    protected List<String> store(List<Part> parts, List<File> targets) throws IOException {
+        List<String> errors = new ArrayList<>(parts.size());
+        if (uploadExecutor == null) {
+            for (int i = 0; i < parts.size(); i++) errors.add(store(parts.get(i), targets.get(i)));
+            return errors;
+        }
+        LinkedList<Future<String>> window = new LinkedList<>();
+        try {
+            for (int i = 0; i < parts.size() || !window.isEmpty(); ) {
+                if (i < parts.size() && window.size() < uploadParallelism) {
+                    final Part part = parts.get(i);
+                    final File target = targets.get(i++);
+                    window.add(uploadExecutor.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            return store(part, target);
+                        }
+                    }));
+                    continue;
+                }
+                errors.add(await(window.removeFirst()));
             }
-            part.write(new File(file, filename).getPath());
+        } finally {
+            for (Future<String> future : window) future.cancel(true);
+        }
+        return errors;
+    }
+
+    /**
+     * 把上传的部分写入目标文件，失败时返回错误信息而不是抛出异常。
+     *
+     * @param part   上传的部分
+     * @param target 目标文件
+     * @return 上传错误，成功时为{@code null}
+     */
+    private String store(Part part, File target) {
+        channels.invalidate(target);
+        try {
+            upload(part, target, Digests.parse(part.getHeader("Digest")), false);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        } catch (IOException e) {
+            // 不向客户端暴露服务器上的绝对路径
+            if (e instanceof FileSystemException && ((FileSystemException) e).getReason() != null) return ((FileSystemException) e).getReason();
+            return e.getClass().getSimpleName();
+        } finally {
+            channels.invalidate(target);
+            listingCache.invalidate(target);
+        }
+    }
+
+    /**
+     * 通过 {@link Part#write(String)} 把上传的部分写到目标文件旁边的临时文件再重命名为目标文件，
+     * 容器已经把内容暂存到磁盘时只是一次重命名，不再复制一遍。只有需要时才读取临时文件计算摘要。
+     * 不超过 upload-buffer 的部分通常还在容器的内存中，而且有的容器不支持把内存中的部分写到绝对路径，直接复制。
+     * 写入失败时删除临时文件，目标文件保持原样。
+     *
+     * @param part      上传的部分
+     * @param target    目标文件
+     * @param expected  声明的 SHA-256 摘要，为{@code null}时不校验
+     * @param digesting 没有声明摘要时是否也计算摘要
+     * @return 文件的 SHA-256 摘要，没有计算时为{@code null}
+     * @throws IOException              I/O 异常
+     * @throws IllegalArgumentException 与声明的摘要不一致
+     */
+    protected byte[] upload(Part part, File target, byte[] expected, boolean digesting) throws IOException {
+        if (part.getSize() <= uploadBuffer) {
+            try (InputStream in = part.getInputStream()) {
+                return upload(in, part.getSize(), target, expected);
+            }
+        }
+        String name = target.getName();
+        File temp = File.createTempFile("." + (name.length() > 64 ? name.substring(0, 64) : name) + ".", ".upload", target.getParentFile());
+        boolean uploaded = false;
+        try {
+            part.write(temp.getPath());
+            byte[] digest = expected != null || digesting ? digests.hash(temp) : null;
+            if (expected != null && !MessageDigest.isEqual(digest, expected)) throw new IllegalArgumentException("digest mismatch");
+            BasicFileAttributes attributes = Files.readAttributes(temp.toPath(), BasicFileAttributes.class);
+            Toolkit.move(temp, target);
+            uploaded = true;
+            if (digest != null) digests.put(target, attributes, digest);
+            return digest;
+        } finally {
+            if (!uploaded && temp.exists() && !temp.delete()) temp.deleteOnExit();
         }
     }
 
@@ -275,9 +995,12 @@ public class FilemanWebSupport implements Interceptor {
         while (filemanPath.endsWith("/")) filemanPath = filemanPath.substring(0, filemanPath.length() - 1);
         filemanPath = URLDecoder.decode(filemanPath, "UTF-8");
         File file = new File(root, filemanPath);
-        Collection<Part> parts = request.getParts();
+        // 浏览器表单上传使用 multipart，其他请求体直接作为文件内容
+        String contentType = request.getContentType();
+        boolean multipart = contentType != null && contentType.toLowerCase().startsWith("multipart/");
+        Collection<Part> parts = multipart ? request.getParts() : null;
         // 如果没有文件则返回
-        if (parts.isEmpty()) {
+        if (multipart && parts.isEmpty()) {
             return;
         }
         // 如果所在目录不存在则创建
@@ -291,8 +1014,141 @@ public class FilemanWebSupport implements Interceptor {
             response.sendError(HttpURLConnection.HTTP_CONFLICT, "Conflict");
             return;
         }
-        Part part = parts.iterator().next();
-        part.write(file.getPath());
+        // 带有 Content-Range 的请求体是分块上传中的一块
+        String contentRange = request.getHeader("Content-Range");
+        if (!multipart && contentRange != null) {
+            chunk(request, response, file, contentRange);
+            return;
+        }
+        channels.invalidate(file);
+        try {
+            byte[] digest;
+            // 与 POST 一样先写到临时文件再替换，写入失败时目标文件保持原样
+            if (multipart) {
+                // 请求的 Digest 头与直接上传一样是文件内容的摘要，没有时使用这一部分的 Digest 头
+                Part part = parts.iterator().next();
+                String expected = Toolkit.ifBlank(request.getHeader("Digest"), part.getHeader("Digest"));
+                digest = upload(part, file, Digests.parse(expected), true);
+            } else {
+                digest = upload(request.getInputStream(), request.getContentLengthLong(), file, Digests.parse(request.getHeader("Digest")));
+            }
+            response.setHeader("Digest", Digests.headerOf(digest));
+        } catch (EOFException e) {
+            response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+        } finally {
+            channels.invalidate(file);
+            listingCache.invalidate(file);
+        }
+    }
+
+    /**
+     * 接收分块上传的一块，内容范围为 bytes &#42;/TOTAL 时只查询上传进度。
+     * 上传完整时返回 200 并通过 Digest 头返回整个文件的摘要，否则返回 202 并通过 Range 头返回已经接收的区间，
+     * 客户端据此续传缺少的区间。分块请求的 Digest 头是这一块内容的摘要，不一致时不接收这一块。
+     *
+     * @param request  请求
+     * @param response 回应
+     * @param file     目标文件
+     * @param value    Content-Range 请求头
+     * @throws IOException I/O 异常
+     */
+    protected void chunk(HttpServletRequest request, HttpServletResponse response, File file, String value) throws IOException {
+        ContentRange range;
+        try {
+            range = ContentRange.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+            return;
+        }
+        long length = request.getContentLengthLong();
+        if (!"bytes".equalsIgnoreCase(range.getUnit()) || (length >= 0 && length != range.getLength())) {
+            response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+            return;
+        }
+        Uploads.Upload upload;
+        if (range.isQuery()) {
+            upload = uploads.status(file);
+            // 没有正在进行的上传但目标文件长度一致，说明上传已经提交
+            if (upload == null && file.isFile() && file.length() == range.getTotal()) {
+                byte[] digest = digests.digestOf(file, ActionContext.snapshot(file));
+                if (digest != null) response.setHeader("Digest", Digests.headerOf(digest));
+                return;
+            }
+        } else {
+            try {
+                upload = uploads.receive(file, range, request.getInputStream(), Digests.parse(request.getHeader("Digest")));
+            } catch (EOFException e) {
+                response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, "Bad Request");
+                return;
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpURLConnection.HTTP_BAD_REQUEST, e.getMessage());
+                return;
+            } catch (IllegalStateException e) {
+                response.sendError(HttpURLConnection.HTTP_CONFLICT, "Conflict");
+                return;
+            } finally {
+                listingCache.invalidate(file);
+            }
+        }
+        if (upload != null && upload.getTotal() != range.getTotal()) {
+            response.sendError(HttpURLConnection.HTTP_CONFLICT, "Conflict");
+            return;
+        }
+        if (upload != null && upload.isCommitted()) {
+            channels.invalidate(file);
+            digests.put(file, upload.getDigest());
+            response.setHeader("Digest", Digests.headerOf(upload.getDigest()));
+            return;
+        }
+        response.setStatus(HttpURLConnection.HTTP_ACCEPTED);
+        String received = upload == null ? "" : upload.getReceived();
+        if (!received.isEmpty()) response.setHeader("Range", "bytes=" + received);
+    }
+
+    /**
+     * 把请求体写入目标文件所在目录下的临时文件，完整写入后原子地重命名为目标文件，
+     * 写入失败时删除临时文件，目标文件保持原样。
+     *
+     * 写入的同时计算 SHA-256 摘要，与声明的摘要不一致时不替换目标文件，成功后记录摘要。
+     *
+     * @param in       请求体
+     * @param length   请求体长度，未知时为 -1
+     * @param file     目标文件
+     * @param expected 声明的 SHA-256 摘要，为{@code null}时不校验
+     * @return 文件的 SHA-256 摘要
+     * @throws IOException              I/O 异常，请求体比声明的长度短时抛出 {@link EOFException}
+     * @throws IllegalArgumentException 与声明的摘要不一致
+     */
+    protected byte[] upload(InputStream in, long length, File file, byte[] expected) throws IOException {
+        String name = file.getName();
+        String prefix = "." + (name.length() > 64 ? name.substring(0, 64) : name) + ".";
+        File temp = File.createTempFile(prefix, ".upload", file.getParentFile());
+        boolean uploaded = false;
+        try {
+            long count = 0;
+            MessageDigest md = Digests.newDigest();
+            try (OutputStream out = new FileOutputStream(temp)) {
+                byte[] buf = new byte[uploadBuffer];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    md.update(buf, 0, n);
+                    out.write(buf, 0, n);
+                    count += n;
+                }
+            }
+            if (length >= 0 && count != length) throw new EOFException("expected " + length + " bytes but received " + count);
+            byte[] digest = md.digest();
+            if (expected != null && !MessageDigest.isEqual(digest, expected)) throw new IllegalArgumentException("digest mismatch");
+            BasicFileAttributes attributes = Files.readAttributes(temp.toPath(), BasicFileAttributes.class);
+            Toolkit.move(temp, file);
+            uploaded = true;
+            digests.put(file, attributes, digest);
+            return digest;
+        } finally {
+            if (!uploaded && !temp.delete()) temp.deleteOnExit();
+        }
     }
 
     protected void delete(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -303,14 +1159,42 @@ public class FilemanWebSupport implements Interceptor {
         while (filemanPath.endsWith("/")) filemanPath = filemanPath.substring(0, filemanPath.length() - 1);
         filemanPath = URLDecoder.decode(filemanPath, "UTF-8");
         File file = new File(root, filemanPath);
+        uploads.abort(file);
+        channels.invalidate(file);
         boolean deleted = Toolkit.delete(file);
+        listingCache.invalidate(file);
         if (!deleted) response.sendError(HttpURLConnection.HTTP_INTERNAL_ERROR);
     }
 
+    /**
+     * @return 文件通道缓存，可用于查看命中、未命中及打开句柄数量
+     */
+    public ChannelCache getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return 目录列表缓存，可用于查看命中率
+     */
+    public ListingCache getListingCache() {
+        return listingCache;
+    }
+
     protected void destroy() {
         Toolkit.release(configuration);
         Toolkit.release(synthesizer);
         Toolkit.release(formatter);
+        Toolkit.release(transmitter);
+        Toolkit.release(channels);
+        Toolkit.release(listings);
+        Toolkit.release(listingCache);
+        Toolkit.release(uploads);
+        Toolkit.release(digests);
+        if (executor != null) executor.shutdownNow();
+        if (uploadExecutor != null) uploadExecutor.shutdownNow();
+        Toolkit.release(follower);
+        Toolkit.release(charsets);
+        Toolkit.release(contentTypes);
         for (Converter converter : converters) Toolkit.release(converter);
         for (Extractor extractor : extractors) Toolkit.release(extractor);
         for (Interceptor interceptor : interceptors) Toolkit.release(interceptor);
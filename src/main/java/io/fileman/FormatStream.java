@@ -0,0 +1,30 @@
+package io.fileman;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 格式化输出流
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public interface FormatStream extends Closeable {
+
+    /**
+     * 输出一个子文件
+     *
+     * @param child 子文件
+     * @throws IOException I/O 异常
+     */
+    void write(Fileman child) throws IOException;
+
+    /**
+     * 输出结尾并刷新，只应该在所有子文件都成功输出之后调用。
+     *
+     * @throws IOException I/O 异常
+     */
+    @Override
+    void close() throws IOException;
+
+}
@@ -0,0 +1,111 @@
+package io.fileman;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 目录的有序快照，只保存排序需要的名称、大小及最后修改时间。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Listing {
+    private final Order order;
+    private final long modified;
+    private final List<Entry> entries;
+
+    private Listing(Order order, long modified, List<Entry> entries) {
+        this.order = order;
+        this.modified = modified;
+        this.entries = entries;
+    }
+
+    /**
+     * 列举并排序目录，列举过程中被删除的子文件直接跳过
+     *
+     * @param directory 目录
+     * @param order     排序方式
+     * @return 目录快照
+     * @throws IOException I/O 异常
+     */
+    public static Listing of(Path directory, Order order) throws IOException {
+        long modified = Files.getLastModifiedTime(directory).toMillis();
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = ActionContext.snapshot(path.toFile());
+                } catch (IOException e) {
+                    continue;
+                }
+                long size = attributes.isDirectory() ? 0L : attributes.size();
+                entries.add(new Entry(path.getFileName().toString(), size, attributes.lastModifiedTime().toMillis()));
+            }
+        }
+        Collections.sort(entries, order);
+        return new Listing(order, modified, Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * 定位游标之后的第一个子文件
+     *
+     * @param cursor 游标
+     * @return 游标之后第一个子文件的下标
+     * @throws IllegalArgumentException 游标不合法时
+     */
+    public int indexAfter(String cursor) throws IllegalArgumentException {
+        if (Toolkit.isBlank(cursor)) return 0;
+        int index = Collections.binarySearch(entries, order.entryOf(cursor), order);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 目录快照中的子文件
+     */
+    public static class Entry {
+        private final String name;
+        private final long size;
+        private final long time;
+
+        public Entry(String name, long size, long time) {
+            this.name = name;
+            this.size = size;
+            this.time = time;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package io.fileman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 目录列表缓存，以目录路径及列表变体（转换器、格式化器、排序及分页参数）为键缓存合成好或格式化好的目录，
+ * 按最近最少使用淘汰，同时限制缓存项数量及估算的内存占用。
+ * 缓存的目录通过共享的 {@link WatchService} 监听变化后失效。不支持监听的文件系统或者关闭了监听时，
+ * 命中时比较目录本身的最后修改时间及大小，只需一次访问文件系统；子文件内容变化时目录本身的属性不变，
+ * 因此这样的缓存项最多只使用 revalidate 毫秒，之后重新合成。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ListingCache implements Releasable {
+    private final int capacity;
+    private final long limit;
+    private final long entryLimit;
+    private final boolean watching;
+    private final long revalidate;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, WatchKey> watches = new HashMap<>();
+    private final Set<Stamp> pending = Collections.newSetFromMap(new WeakHashMap<Stamp, Boolean>());
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long bytes;
+    private WatchService watcher;
+
+    public ListingCache(int capacity, long limit) {
+        this(capacity, limit, limit);
+    }
+
+    /**
+     * @param capacity   最多缓存的目录列表数量
+     * @param limit      所有缓存项估算的内存占用上限
+     * @param entryLimit 单个缓存项估算的内存占用上限，也是合成或格式化时为缓存而收集内容的上限
+     */
+    public ListingCache(int capacity, long limit, long entryLimit) {
+        this(capacity, limit, entryLimit, true, 5 * 1000L);
+    }
+
+    /**
+     * @param capacity   最多缓存的目录列表数量
+     * @param limit      所有缓存项估算的内存占用上限
+     * @param entryLimit 单个缓存项估算的内存占用上限，也是合成或格式化时为缓存而收集内容的上限
+     * @param watching   是否通过 {@link WatchService} 监听目录变化
+     * @param revalidate 未监听的目录的缓存项最多使用的毫秒数
+     */
+    public ListingCache(int capacity, long limit, long entryLimit, boolean watching, long revalidate) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+        if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+        if (entryLimit < 0) throw new IllegalArgumentException("entry limit must not be negative");
+        if (revalidate < 0) throw new IllegalArgumentException("revalidate must not be negative");
+        this.capacity = capacity;
+        this.limit = limit;
+        this.entryLimit = Math.min(entryLimit, limit);
+        this.watching = watching;
+        this.revalidate = revalidate;
+    }
+
+    /**
+     * 在合成目录之前获取目录状态并开始监听，合成期间目录如果失效则不会缓存合成结果。
+     *
+     * @param directory 目录
+     * @return 目录状态
+     * @throws IOException I/O 异常
+     */
+    public Stamp stamp(File directory) throws IOException {
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        boolean watched = capacity > 0 && watching && watch(path);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Stamp stamp = new Stamp(path, attributes.lastModifiedTime().toMillis(), attributes.size(), watched);
+        synchronized (this) {
+            pending.add(stamp);
+        }
+        return stamp;
+    }
+
+    /**
+     * 获取缓存的目录
+     *
+     * @param stamp   目录状态
+     * @param variant 列表变体
+     * @return 缓存项，未命中时返回{@code null}，缓存的内容不可修改
+     */
+    public Entry get(Stamp stamp, String variant) {
+        String key = stamp.path + "?" + variant;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            // 监听的目录变化时缓存项已被移除，未监听的目录比较目录本身的属性并且限制使用时长
+            if (entry != null && (entry.stamp.watched || isValid(entry.stamp, stamp))) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            if (entry != null) remove(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private boolean isValid(Stamp cached, Stamp current) {
+        return cached.modified == current.modified && cached.size == current.size && current.time - cached.time < revalidate;
+    }
+
+    /**
+     * 缓存合成好的目录
+     *
+     * @param stamp   合成之前获取的目录状态
+     * @param variant 列表变体
+     * @param fileman 目录，包含全部子文件
+     * @param size    估算的内存占用
+     * @return 是否缓存
+     */
+    public boolean put(Stamp stamp, String variant, Fileman fileman, long size) {
+        return put(stamp, variant, new Entry(stamp, fileman, null, size));
+    }
+
+    /**
+     * 缓存格式化好的目录
+     *
+     * @param stamp      合成之前获取的目录状态
+     * @param variant    列表变体
+     * @param serialized 格式化好的目录
+     * @return 是否缓存
+     */
+    public boolean put(Stamp stamp, String variant, Serialized serialized) {
+        return put(stamp, variant, new Entry(stamp, null, serialized, 256L + serialized.getBody().length));
+    }
+
+    private boolean put(Stamp stamp, String variant, Entry created) {
+        long size = created.size;
+        String key = stamp.path + "?" + variant;
+        synchronized (this) {
+            if (capacity == 0 || size > entryLimit || stamp.dirty) {
+                discard(stamp);
+                return false;
+            }
+            pending.remove(stamp);
+            if (entries.containsKey(key)) remove(key);
+            entries.put(key, created);
+            bytes += size;
+            // 按访问顺序排列的映射中 get 也会改变顺序，淘汰时只能通过迭代器取值
+            Iterator<Entry> iterator = entries.values().iterator();
+            while ((entries.size() > capacity || bytes > limit) && iterator.hasNext()) {
+                Entry entry = iterator.next();
+                iterator.remove();
+                bytes -= entry.size;
+                unwatch(entry.stamp.path);
+            }
+            return entries.containsKey(key);
+        }
+    }
+
+    /**
+     * 放弃缓存合成结果，例如目录太大或者合成失败
+     *
+     * @param stamp 合成之前获取的目录状态
+     */
+    public synchronized void discard(Stamp stamp) {
+        pending.remove(stamp);
+        unwatch(stamp.path);
+    }
+
+    /**
+     * 使文件变化所影响的目录缓存失效，包括文件本身、其下的所有目录以及所有上级目录，
+     * 因为上级目录的列表中展示了下级目录的大小和最后修改时间。
+     *
+     * @param file 发生变化的文件或目录
+     */
+    public void invalidate(File file) {
+        invalidate(file.toPath().toAbsolutePath().normalize(), true);
+    }
+
+    /**
+     * 使目录缓存失效
+     *
+     * @param path    发生变化的路径
+     * @param written 是否是通过写操作发生的变化，写操作影响路径本身、其下的所有目录及所有上级目录，
+     *                监听到的变化只影响目录本身及其所在目录。
+     */
+    private synchronized void invalidate(Path path, boolean written) {
+        for (Stamp stamp : pending) {
+            if (affects(path, stamp.path, written)) stamp.dirty = true;
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        List<Path> removed = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            Path directory = entry.getValue().stamp.path;
+            if (!affects(path, directory, written)) continue;
+            iterator.remove();
+            bytes -= entry.getValue().size;
+            removed.add(directory);
+        }
+        for (Path directory : removed) unwatch(directory);
+    }
+
+    private static boolean affects(Path path, Path directory, boolean written) {
+        if (written) return path.startsWith(directory) || directory.startsWith(path);
+        return directory.equals(path) || directory.equals(path.getParent());
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        synchronized (this) {
+            for (Stamp stamp : pending) stamp.dirty = true;
+            entries.clear();
+            bytes = 0;
+            for (WatchKey key : watches.values()) if (key != null) key.cancel();
+            watches.clear();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return;
+        bytes -= entry.size;
+        unwatch(entry.stamp.path);
+    }
+
+    /**
+     * 监听目录，同一个目录的多个列表变体共享同一个监听
+     *
+     * @param path 目录
+     * @return 是否成功监听
+     */
+    private synchronized boolean watch(Path path) {
+        if (watches.containsKey(path)) return watches.get(path) != null;
+        // 清理没有缓存项也没有合成中的目录的监听，避免监听数量无限增长
+        if (watches.size() >= capacity * 2) {
+            Set<Path> used = new HashSet<>();
+            for (Entry entry : entries.values()) used.add(entry.stamp.path);
+            for (Stamp stamp : pending) used.add(stamp.path);
+            Iterator<Map.Entry<Path, WatchKey>> iterator = watches.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, WatchKey> watch = iterator.next();
+                if (used.contains(watch.getKey())) continue;
+                iterator.remove();
+                if (watch.getValue() != null) watch.getValue().cancel();
+            }
+        }
+        WatchKey key = null;
+        try {
+            if (watcher == null) {
+                final WatchService watcher = path.getFileSystem().newWatchService();
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        poll(watcher);
+                    }
+                }, "fileman-watch");
+                thread.setDaemon(true);
+                thread.start();
+                this.watcher = watcher;
+            }
+            key = path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+            key = null;
+        }
+        // 不支持监听的目录也记录下来，避免每次都尝试注册
+        watches.put(path, key);
+        return key != null;
+    }
+
+    private void unwatch(Path path) {
+        for (Entry entry : entries.values()) if (entry.stamp.path.equals(path)) return;
+        for (Stamp stamp : pending) if (stamp.path.equals(path)) return;
+        WatchKey key = watches.remove(path);
+        if (key != null) key.cancel();
+    }
+
+    private void poll(WatchService watcher) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) overflow |= event.kind() == StandardWatchEventKinds.OVERFLOW;
+            // 目录的变化会影响目录本身及上级目录的列表
+            if (overflow) clear();
+            else invalidate((Path) key.watchable(), false);
+            if (!key.reset()) {
+                synchronized (this) {
+                    if (watches.get(key.watchable()) == key) watches.remove(key.watchable());
+                }
+            }
+        }
+    }
+
+    /**
+     * 估算目录在内存中的占用
+     *
+     * @param fileman 目录
+     * @return 估算的字节数
+     */
+    public static long sizeOf(Fileman fileman) {
+        long size = 64L + sizeOf(fileman.getUri()) + sizeOf(fileman.getPath()) + sizeOf(fileman.getNext());
+        Map<String, Object> properties = fileman.getProperties();
+        if (properties != null) {
+            size += 64L;
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                Object value = property.getValue();
+                size += 32L + sizeOf(property.getKey()) + (value instanceof String ? sizeOf((String) value) : 16L);
+            }
+        }
+        List<Fileman> children = fileman.getChildren();
+        for (int i = 0; children != null && i < children.size(); i++) size += 8L + sizeOf(children.get(i));
+        return size;
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0L : 40L + 2L * value.length();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0D : (double) hits / total;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getEntryLimit() {
+        return entryLimit;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void release() {
+        clear();
+        synchronized (this) {
+            Toolkit.close(watcher);
+            watcher = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ListingCache{size=" + getSize() + ", bytes=" + getBytes() + ", hits=" + getHits() + ", misses=" + getMisses() + ", ratio=" + String.format("%.2f", getHitRatio()) + "}";
+    }
+
+    /**
+     * 合成目录之前的目录状态
+     */
+    public static class Stamp {
+        private final Path path;
+        private final long time = System.currentTimeMillis();
+        private final long modified;
+        /**
+         * 目录本身的大小，多数文件系统中会随子文件的增删变化
+         */
+        private final long size;
+        private final boolean watched;
+        private volatile boolean dirty;
+
+        Stamp(Path path, long modified, long size, boolean watched) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.watched = watched;
+        }
+
+        /**
+         * @return 获取目录状态的时间，之后目录发生变化则缓存项会失效
+         */
+        public long getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * 缓存项，缓存合成好的目录或者格式化好的目录
+     */
+    public static class Entry {
+        private final Stamp stamp;
+        private final Fileman fileman;
+        private final Serialized serialized;
+        private final long size;
+
+        Entry(Stamp stamp, Fileman fileman, Serialized serialized, long size) {
+            this.stamp = stamp;
+            this.fileman = fileman;
+            this.serialized = serialized;
+            this.size = size;
+        }
+
+        public Fileman getFileman() {
+            return fileman;
+        }
+
+        public Serialized getSerialized() {
+            return serialized;
+        }
+    }
+}
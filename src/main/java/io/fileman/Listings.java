@@ -0,0 +1,59 @@
+package io.fileman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 目录有序快照缓存，以目录路径和排序方式为键，目录最后修改时间变化后重新列举，按最近最少使用淘汰。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Listings implements Releasable {
+    private final int capacity;
+    private final Map<String, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+
+    public Listings(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+        this.capacity = capacity;
+    }
+
+    /**
+     * 获取目录的有序快照
+     *
+     * @param directory 目录
+     * @param order     排序方式
+     * @return 目录快照
+     * @throws IOException I/O 异常
+     */
+    public Listing listingOf(File directory, Order order) throws IOException {
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        String key = path + "?" + order;
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        synchronized (this) {
+            Listing listing = listings.get(key);
+            if (listing != null && listing.getModified() == modified) return listing;
+        }
+        Listing listing = Listing.of(path, order);
+        if (capacity == 0) return listing;
+        synchronized (this) {
+            listings.put(key, listing);
+            Iterator<Listing> iterator = listings.values().iterator();
+            while (listings.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return listing;
+    }
+
+    @Override
+    public synchronized void release() {
+        listings.clear();
+    }
+}
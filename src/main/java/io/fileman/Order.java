@@ -0,0 +1,119 @@
+package io.fileman;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.nio.charset.Charset;
+import java.util.Comparator;
+
+/**
+ * 目录列表排序方式，格式为 {@code name|size|time[,desc]}，同值时按名称排序保证顺序稳定。
+ * 分页游标记录上一页最后一个子文件的排序值和名称，目录中增删文件不会导致翻页重复或遗漏。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Order implements Comparator<Listing.Entry> {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final Order DEFAULT = new Order("name", false);
+
+    private final String field;
+    private final boolean desc;
+
+    private Order(String field, boolean desc) {
+        this.field = field;
+        this.desc = desc;
+    }
+
+    /**
+     * 解析排序方式
+     *
+     * @param value 排序方式，空白时按名称升序
+     * @return 排序方式
+     * @throws IllegalArgumentException 排序方式不合法时
+     */
+    public static Order valueOf(String value) throws IllegalArgumentException {
+        if (Toolkit.isBlank(value)) return DEFAULT;
+        String[] splits = value.trim().split("\\s*,\\s*");
+        if (splits.length > 2) throw new IllegalArgumentException("illegal sort: " + value);
+        String field = splits[0].toLowerCase();
+        if (!field.equals("name") && !field.equals("size") && !field.equals("time")) throw new IllegalArgumentException("illegal sort: " + value);
+        boolean desc = splits.length == 2 && splits[1].equalsIgnoreCase("desc");
+        if (splits.length == 2 && !desc && !splits[1].equalsIgnoreCase("asc")) throw new IllegalArgumentException("illegal sort: " + value);
+        return new Order(field, desc);
+    }
+
+    @Override
+    public int compare(Listing.Entry a, Listing.Entry b) {
+        long x = valueOf(a);
+        long y = valueOf(b);
+        int comparison = x < y ? -1 : x > y ? 1 : a.getName().compareTo(b.getName());
+        return desc ? -comparison : comparison;
+    }
+
+    private long valueOf(Listing.Entry entry) {
+        switch (field) {
+            case "size":
+                return entry.getSize();
+            case "time":
+                return entry.getTime();
+            default:
+                return 0L;
+        }
+    }
+
+    /**
+     * 生成从指定子文件之后继续翻页的游标
+     *
+     * @param entry 当前页最后一个子文件
+     * @return 不透明的游标
+     */
+    public String cursorOf(Listing.Entry entry) {
+        String cursor = this + "\n" + valueOf(entry) + "\n" + entry.getName();
+        return Base64.encodeBase64URLSafeString(cursor.getBytes(UTF_8));
+    }
+
+    /**
+     * 解析游标为用于定位的子文件
+     *
+     * @param cursor 游标
+     * @return 游标所指的子文件
+     * @throws IllegalArgumentException 游标不合法或与当前排序方式不一致时
+     */
+    public Listing.Entry entryOf(String cursor) throws IllegalArgumentException {
+        String[] splits = new String(Base64.decodeBase64(cursor), UTF_8).split("\n", 3);
+        if (splits.length != 3 || !splits[0].equals(toString())) throw new IllegalArgumentException("illegal cursor: " + cursor);
+        long value;
+        try {
+            value = Long.valueOf(splits[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("illegal cursor: " + cursor);
+        }
+        switch (field) {
+            case "size":
+                return new Listing.Entry(splits[2], value, 0L);
+            case "time":
+                return new Listing.Entry(splits[2], 0L, value);
+            default:
+                return new Listing.Entry(splits[2], 0L, 0L);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Order that = (Order) o;
+        return desc == that.desc && field.equals(that.field);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * field.hashCode() + (desc ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return desc ? field + ",desc" : field;
+    }
+}
@@ -1,5 +1,9 @@
 package io.fileman;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * 文件内容范围
  *
@@ -12,54 +16,109 @@ public class Range {
      */
     private final String unit;
     /**
-     * 内容起始下标
-     */
-    private final long start;
-    /**
-     * 内容结束下标
+     * 内容区段，至少包含一个
      */
-    private final long end;
+    private final List<Section> sections;
 
     public Range(String unit, long start, long end) {
-        if (unit == null) throw new NullPointerException();
+        this(unit, Collections.singletonList(new Section(start, end)));
+    }
+
+    public Range(String unit, List<Section> sections) {
+        if (unit == null || sections == null) throw new NullPointerException();
+        if (sections.isEmpty()) throw new IllegalArgumentException("sections must not be empty");
         this.unit = unit;
-        this.start = start;
-        this.end = end;
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
     }
 
     public static Range valueOf(String value) {
         if (value == null) throw new NullPointerException();
         int index = value.indexOf("=");
         if (index < 0) {
-            throw new IllegalArgumentException("could not parse: " + value + " to range, expecting pattern like: UNIT=START-END");
+            throw new IllegalArgumentException("could not parse: " + value + " to range, expecting pattern like: UNIT=START-END[,START-END]");
+        }
+        String unit = value.substring(0, index).trim();
+        String[] ranges = value.substring(index + 1).split(",");
+        List<Section> sections = new ArrayList<>(ranges.length);
+        for (String range : ranges) {
+            range = range.trim();
+            if (range.isEmpty()) continue;
+            int idx = range.indexOf("-");
+            if (idx < 0) {
+                throw new IllegalArgumentException("could not parse: " + value + " to range, expecting pattern like: UNIT=START-END[,START-END]");
+            }
+            String first = range.substring(0, idx).trim();
+            String last = range.substring(idx + 1).trim();
+            // 起始和结束都缺省的区段没有意义
+            if (first.isEmpty() && last.isEmpty()) {
+                throw new IllegalArgumentException("could not parse: " + value + " to range, expecting pattern like: UNIT=START-END[,START-END]");
+            }
+            long start = first.isEmpty() ? -1L : Long.valueOf(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.valueOf(last);
+            sections.add(new Section(start, end));
         }
-        String unit = value.substring(0, index);
-        String range = value.substring(index + 1);
-        int idx = range.indexOf("-");
-        if (idx < 0) {
-            throw new IllegalArgumentException("could not parse: " + value + " to range, expecting pattern like: UNIT=START-END");
+        if (sections.isEmpty()) {
+            throw new IllegalArgumentException("could not parse: " + value + " to range, expecting pattern like: UNIT=START-END[,START-END]");
         }
-        String first = range.substring(0, idx);
-        String last = range.substring(idx + 1);
-        long start = first.isEmpty() ? -1L : Long.valueOf(first);
-        long end = last.isEmpty() ? Long.MAX_VALUE : Long.valueOf(last);
-        return new Range(unit, start, end);
+        return new Range(unit, sections);
     }
 
     public String getUnit() {
         return unit;
     }
 
+    /**
+     * @return 第一个区段的起始下标
+     */
     public long getStart() {
-        return start;
+        return sections.get(0).getStart();
     }
 
+    /**
+     * @return 第一个区段的结束下标
+     */
     public long getEnd() {
-        return end;
+        return sections.get(0).getEnd();
+    }
+
+    public List<Section> getSections() {
+        return sections;
     }
 
     @Override
     public String toString() {
-        return unit + "=" + (start >= 0 ? start : "") + "-" + (end < Long.MAX_VALUE ? end : "");
+        return unit + "=" + Toolkit.join(sections, ",");
+    }
+
+    /**
+     * 内容区段
+     */
+    public static class Section {
+        /**
+         * 内容起始下标，小于 0 时表示取末尾 end 个单位
+         */
+        private final long start;
+        /**
+         * 内容结束下标
+         */
+        private final long end;
+
+        public Section(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return (start >= 0 ? start : "") + "-" + (end < Long.MAX_VALUE ? end : "");
+        }
     }
 }
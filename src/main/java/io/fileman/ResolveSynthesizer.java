@@ -12,7 +12,7 @@ import java.util.Map;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class ResolveSynthesizer implements Synthesizer<Resolver> {
+public class ResolveSynthesizer implements Synthesizer<Resolver>, ThreadSafe {
 
     @Override
     public Map<String, Object> synthesize(File file, SynthesizeContext<Resolver> context) throws IOException {
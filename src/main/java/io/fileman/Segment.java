@@ -0,0 +1,51 @@
+package io.fileman;
+
+/**
+ * 传输片段，由片段头部字节及紧随其后的文件区间组成。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/10
+ */
+public class Segment {
+    private static final byte[] EMPTY = new byte[0];
+    /**
+     * 片段头部字节，在文件区间之前输出
+     */
+    private final byte[] head;
+    /**
+     * 文件区间起始位置
+     */
+    private final long position;
+    /**
+     * 文件区间长度
+     */
+    private final long length;
+
+    public Segment(long position, long length) {
+        this(EMPTY, position, length);
+    }
+
+    public Segment(byte[] head, long position, long length) {
+        if (head == null) throw new NullPointerException();
+        this.head = head;
+        this.position = position;
+        this.length = length;
+    }
+
+    public byte[] getHead() {
+        return head;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return position + "+" + length;
+    }
+}
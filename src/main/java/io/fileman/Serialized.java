@@ -0,0 +1,39 @@
+package io.fileman;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * 格式化好的目录，用强 ETag 标识内容，命中缓存时直接一次写出。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Serialized {
+    private final byte[] body;
+    private final String contentType;
+    private final String etag;
+    private final long modified;
+
+    public Serialized(byte[] body, String contentType, long modified) {
+        this.body = body;
+        this.contentType = contentType;
+        this.etag = "\"" + DigestUtils.md5Hex(body) + "\"";
+        this.modified = modified;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+}
@@ -0,0 +1,141 @@
+package io.fileman;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 旁路文件存储，每个键对应存储目录下以键的 MD5 命名的一个文件，文件头依次是魔数、版本及键本身，
+ * 魔数、版本或键不一致的文件视为不存在。写入时先写到同目录的临时文件再原子地替换，
+ * 读取者不会看到写了一半的文件。持久化只是加速手段，读写失败都静默地当作没有记录。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Sidecars {
+    private final File directory;
+    private final String suffix;
+    private final int magic;
+    private final int version;
+
+    /**
+     * @param directory 存储目录，为 null 时不持久化
+     * @param suffix    旁路文件的扩展名，包括点号
+     * @param magic     魔数
+     * @param version   格式版本
+     */
+    public Sidecars(File directory, String suffix, int magic, int version) {
+        this.directory = directory;
+        this.suffix = suffix;
+        this.magic = magic;
+        this.version = version;
+    }
+
+    /**
+     * 读取旁路文件
+     *
+     * @param key     键
+     * @param decoder 文件头之后内容的解码器
+     * @param <T>     记录类型
+     * @return 记录，没有持久化、文件不存在、文件头不一致或读取失败时返回{@code null}
+     */
+    public <T> T load(String key, Decoder<T> decoder) {
+        if (directory == null) return null;
+        File sidecar = sidecarOf(key);
+        if (!sidecar.isFile()) return null;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)));
+            if (in.readInt() != magic || in.readInt() != version) return null;
+            if (!key.equals(in.readUTF())) return null;
+            return decoder.decode(in);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            Toolkit.close(in);
+        }
+    }
+
+    /**
+     * 写入旁路文件
+     *
+     * @param key     键
+     * @param encoder 文件头之后内容的编码器
+     */
+    public void store(String key, Encoder encoder) {
+        if (directory == null) return;
+        if (!directory.exists() && !directory.mkdirs()) return;
+        File sidecar = sidecarOf(key);
+        File temp;
+        DataOutputStream out = null;
+        try {
+            // 同一个键可能被并发地写入，临时文件名必须唯一
+            temp = File.createTempFile(sidecar.getName() + ".", ".tmp", directory);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeUTF(key);
+            encoder.encode(out);
+            out.close();
+            out = null;
+            Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 持久化失败不影响使用
+            temp.delete();
+        } finally {
+            Toolkit.close(out);
+        }
+    }
+
+    /**
+     * @return 是否持久化
+     */
+    public boolean isPersistent() {
+        return directory != null;
+    }
+
+    private File sidecarOf(String key) {
+        return new File(directory, DigestUtils.md5Hex(key) + suffix);
+    }
+
+    /**
+     * 旁路文件内容解码器
+     *
+     * @param <T> 记录类型
+     */
+    public interface Decoder<T> {
+
+        /**
+         * @param in 已经读过文件头的输入流
+         * @return 记录，内容不可用时返回{@code null}
+         * @throws IOException I/O 异常
+         */
+        T decode(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * 旁路文件内容编码器
+     */
+    public interface Encoder {
+
+        /**
+         * @param out 已经写过文件头的输出流
+         * @throws IOException I/O 异常
+         */
+        void encode(DataOutputStream out) throws IOException;
+    }
+
+}
@@ -0,0 +1,23 @@
+package io.fileman;
+
+import java.io.IOException;
+
+/**
+ * 流式格式化器，先输出目录本身，再逐个输出子文件，不需要把整个目录的子文件都加载到内存中。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public interface StreamFormatter extends Formatter {
+
+    /**
+     * 开始格式化输出，子文件通过返回的输出流逐个输出，不应读取目录的子文件列表
+     *
+     * @param fileman 文件目录
+     * @param context 格式化上下文
+     * @return 格式化输出流，如果返回 {@code null} 则表示已经回应了请求，例如重定向，不再需要列举子文件。
+     * @throws IOException I/O 异常
+     */
+    FormatStream open(Fileman fileman, FormatContext context) throws IOException;
+
+}
@@ -3,6 +3,7 @@ package io.fileman;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 
 /**
@@ -15,10 +16,34 @@ public class SynthesizeContext<T extends Converter> extends ActionContext {
     private final List<T> converters;
 
     public SynthesizeContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, List<T> converters) {
-        super(root, configuration, request, response);
+        this(root, configuration, request, response, converters, null);
+    }
+
+    public SynthesizeContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, List<T> converters, Charsets charsets) {
+        super(root, configuration, request, response, charsets);
         this.converters = converters;
     }
 
+    public SynthesizeContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, List<T> converters, Charsets charsets, ContentTypes contentTypes) {
+        super(root, configuration, request, response, charsets, contentTypes);
+        this.converters = converters;
+    }
+
+    public SynthesizeContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response, List<T> converters, Charsets charsets, ContentTypes contentTypes, Digests digests) {
+        super(root, configuration, request, response, charsets, contentTypes, digests);
+        this.converters = converters;
+    }
+
+    public SynthesizeContext(SynthesizeContext<T> context, List<T> converters) {
+        super(context);
+        this.converters = converters;
+    }
+
+    public SynthesizeContext(SynthesizeContext<T> context, File target, BasicFileAttributes attributes) {
+        super(context, target, attributes);
+        this.converters = context.converters;
+    }
+
     public List<T> getConverters() {
         return converters;
     }
@@ -0,0 +1,12 @@
+package io.fileman;
+
+/**
+ * 线程安全的，实现该接口的转换器及合成器可以被多个线程同时调用，用于并行合成目录的子文件。
+ * 没有实现该接口的转换器始终在请求线程中串行调用。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public interface ThreadSafe extends Plugin {
+
+}
@@ -1,6 +1,9 @@
 package io.fileman;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
@@ -80,6 +83,57 @@ public abstract class Toolkit {
         return value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
     }
 
+    /**
+     * 转义 HTML 特殊字符，不包含特殊字符时直接返回原字符串
+     *
+     * @param value 文本
+     * @return 可以放在 HTML 文本或属性值中的文本
+     */
+    public static String escape(String value) {
+        if (value == null) return null;
+        int i = 0;
+        while (i < value.length() && "<>&\"'".indexOf(value.charAt(i)) < 0) i++;
+        if (i == value.length()) return value;
+        StringBuilder escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                case '\'':
+                    escaped.append("&#39;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * 计算路径的层级，即以 / 分隔的非空片段数量
+     *
+     * @param path 路径
+     * @return 层级
+     */
+    public static int depth(String path) {
+        int depth = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) != '/' && (i == 0 || path.charAt(i - 1) == '/')) depth++;
+        }
+        return depth;
+    }
+
     public static boolean delete(File file) {
         if (!file.exists()) return true;
         if (file.isFile()) return file.delete();
@@ -91,6 +145,21 @@ public abstract class Toolkit {
         return file.delete() && deleted;
     }
 
+    /**
+     * 把文件原子地移动到目标位置并替换已存在的目标文件，文件系统不支持原子移动时退化为普通移动。
+     *
+     * @param source 源文件
+     * @param target 目标文件
+     * @throws IOException I/O 异常
+     */
+    public static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public static void release(Object bean) {
         try {
             if (bean instanceof Releasable) ((Releasable) bean).release();
@@ -117,55 +186,17 @@ public abstract class Toolkit {
         }
     }
 
+    /**
+     * 只读取文件开头有限长度的字节探测文件编码，不做缓存
+     *
+     * @param file 文件
+     * @return 文件编码
+     * @throws IOException I/O 异常
+     * @deprecated 使用 {@link ActionContext#charsetOf(File)}，可通过 SPI 拓展探测器并且缓存探测结果
+     */
+    @Deprecated
     public static String charsetOf(File file) throws IOException {
-        String charset = "GBK";
-        byte[] head = new byte[3];
-        boolean checked = false;
-        FileInputStream fis = null;
-        BufferedInputStream bis = null;
-        try {
-            fis = new FileInputStream(file);
-            bis = new BufferedInputStream(fis);
-            bis.mark(0);
-            int read = bis.read(head, 0, 3);
-            if (read == -1) return charset;
-            if (head[0] == (byte) 0xFF && head[1] == (byte) 0xFE) {
-                charset = "UTF-16LE";
-                checked = true;
-            } else if (head[0] == (byte) 0xFE && head[1] == (byte) 0xFF) {
-                charset = "UTF-16BE";
-                checked = true;
-            } else if (head[0] == (byte) 0xEF && head[1] == (byte) 0xBB && head[2] == (byte) 0xBF) {
-                charset = "UTF-8";
-                checked = true;
-            }
-            bis.reset();
-            if (!checked) {
-                while ((read = bis.read()) != -1) {
-                    if (read >= 0xF0) break;
-                    if (0x80 <= read && read <= 0xBF) // 单独出现BF以下的，也算是GBK
-                        break;
-                    if (0xC0 <= read && read <= 0xDF) {
-                        read = bis.read();
-                        if (0x80 <= read && read <= 0xBF) continue;// 双字节 (0xC0 - 0xDF) (0x80  - 0xBF),也可能在GB编码内
-                        else break;
-                    } else if (0xE0 <= read && read <= 0xEF) {// 也有可能出错，但是几率较小
-                        read = bis.read();
-                        if (0x80 <= read && read <= 0xBF) {
-                            read = bis.read();
-                            if (0x80 <= read && read <= 0xBF) {
-                                charset = "UTF-8";
-                                break;
-                            } else break;
-                        } else break;
-                    }
-                }
-            }
-        } finally {
-            close(bis);
-            close(fis);
-        }
-        return charset;
+        return Charsets.DEFAULT.charsetOf(file);
     }
 
 }
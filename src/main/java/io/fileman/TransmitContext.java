@@ -0,0 +1,23 @@
+package io.fileman;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+
+/**
+ * 传输上下文
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/8
+ */
+public class TransmitContext extends ActionContext {
+
+    public TransmitContext(ActionContext context) {
+        super(context);
+    }
+
+    public TransmitContext(File root, Configuration configuration, HttpServletRequest request, HttpServletResponse response) {
+        super(root, configuration, request, response);
+    }
+
+}
@@ -0,0 +1,32 @@
+package io.fileman;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * 文件内容传输器
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/8
+ */
+public interface Transmitter extends Plugin {
+
+    /**
+     * SPI 实现名称，用于和配置的值对应。
+     *
+     * @return SPI 实现名称
+     */
+    String name();
+
+    /**
+     * 按顺序将各个传输片段输出到回应中，传输结束后由传输器负责关闭文件通道。
+     *
+     * @param channel  文件通道
+     * @param segments 传输片段
+     * @param context  传输上下文
+     * @throws IOException I/O 异常
+     */
+    void transmit(FileChannel channel, List<Segment> segments, TransmitContext context) throws IOException;
+
+}
@@ -0,0 +1,384 @@
+package io.fileman;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分块上传，客户端通过 Content-Range 把文件分成多块上传，可以断点续传也可以多个连接并行上传。
+ * 每块内容按偏移量写入目标文件所在目录下预先分配好长度的暂存文件，并记录已经接收的区间，
+ * 所有区间接收完整后把暂存文件原子地重命名为目标文件。
+ * 接收进度只保存在内存中，长时间没有新的分块的上传会被清理。
+ * 最近提交的上传也会记住一段时间，重试或重复的分块与目标文件中对应的内容一致时直接视为已提交，不会重新暂存。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class Uploads implements Releasable {
+    /**
+     * 最多记住的最近提交的上传数量
+     */
+    private static final int RECENT = 1024;
+    private final long timeout;
+    private final int buffer;
+    private final Map<File, Upload> uploads = new HashMap<>();
+    /**
+     * 最近提交的上传，按提交顺序淘汰
+     */
+    private final Map<File, Upload> committed = new LinkedHashMap<>();
+
+    /**
+     * @param timeout 上传的超时时间，单位毫秒，超过这个时间没有收到新的分块的上传会被清理
+     * @param buffer  写入暂存文件的缓冲区大小
+     */
+    public Uploads(long timeout, int buffer) {
+        if (timeout <= 0) throw new IllegalArgumentException("timeout must be positive");
+        if (buffer <= 0) throw new IllegalArgumentException("buffer must be positive");
+        this.timeout = timeout;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 查询上传进度
+     *
+     * @param file 目标文件
+     * @return 正在进行的上传，没有时返回{@code null}
+     */
+    public synchronized Upload status(File file) {
+        return uploads.get(file.getAbsoluteFile());
+    }
+
+    /**
+     * 接收一个分块，接收后所有分块都已完整时提交上传。
+     *
+     * @param file     目标文件
+     * @param range    分块的范围
+     * @param in       分块的内容
+     * @param expected 分块内容声明的 SHA-256 摘要，为{@code null}时不校验
+     * @return 接收分块后的上传
+     * @throws IOException              I/O 异常，分块的内容与范围的长度不一致时抛出 {@link EOFException}
+     * @throws IllegalArgumentException 分块的内容比范围长或者与声明的摘要不一致
+     * @throws IllegalStateException    文件已经在以不同的总长度上传
+     */
+    public Upload receive(File file, ContentRange range, InputStream in, byte[] expected) throws IOException {
+        File target = file.getAbsoluteFile();
+        MessageDigest digest = expected != null ? Digests.newDigest() : null;
+        long start = range.getStart();
+        long end = range.getEnd() + 1;
+        byte[] buf = new byte[(int) Math.min(buffer, range.getLength())];
+        long position = start;
+        // 已经读取但还没有写入的字节数
+        int pending = 0;
+        Upload done = committedOf(target, range.getTotal());
+        if (done != null) {
+            // 与已提交的目标文件逐块比较，一致的部分不需要写入，不一致说明是新的上传
+            FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.READ);
+            try {
+                ByteBuffer existing = ByteBuffer.allocate(buf.length);
+                while (position < end) {
+                    int n = in.read(buf, 0, (int) Math.min(buf.length, end - position));
+                    if (n < 0) throw new EOFException("expected " + range.getLength() + " bytes but received " + (position - start));
+                    existing.clear();
+                    existing.limit(n);
+                    while (existing.hasRemaining() && channel.read(existing, position + existing.position()) > 0) ;
+                    if (existing.hasRemaining() || !equals(buf, existing.array(), n)) {
+                        pending = n;
+                        break;
+                    }
+                    if (digest != null) digest.update(buf, 0, n);
+                    position += n;
+                }
+            } finally {
+                Toolkit.close(channel);
+            }
+            if (pending == 0) {
+                if (in.read() >= 0) throw new IllegalArgumentException("content is longer than " + range);
+                if (digest != null && !MessageDigest.isEqual(digest.digest(), expected)) throw new IllegalArgumentException("digest mismatch");
+                return done;
+            }
+        }
+        Upload upload = open(target, range.getTotal());
+        upload.lock.readLock().lock();
+        try {
+            // 已经提交的上传，重复的分块直接忽略
+            if (upload.committed) return upload;
+            upload.accessed = System.currentTimeMillis();
+            // 与已提交的目标文件一致的前缀从目标文件复制到暂存文件
+            if (position > start) copy(target, start, position, upload.channel);
+            if (pending > 0) {
+                if (digest != null) digest.update(buf, 0, pending);
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, pending);
+                while (bb.hasRemaining()) position += upload.channel.write(bb, position);
+            }
+            while (position < end) {
+                int n = in.read(buf, 0, (int) Math.min(buf.length, end - position));
+                if (n < 0) throw new EOFException("expected " + range.getLength() + " bytes but received " + (position - start));
+                if (digest != null) digest.update(buf, 0, n);
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                while (bb.hasRemaining()) position += upload.channel.write(bb, position);
+            }
+            if (in.read() >= 0) throw new IllegalArgumentException("content is longer than " + range);
+            // 摘要不一致的分块不记录为已接收
+            if (digest != null && !MessageDigest.isEqual(digest.digest(), expected)) throw new IllegalArgumentException("digest mismatch");
+        } finally {
+            upload.lock.readLock().unlock();
+        }
+        boolean completed;
+        synchronized (upload) {
+            upload.extents.add(start, end);
+            completed = upload.extents.covers(upload.total) && !upload.committing;
+            if (completed) upload.committing = true;
+        }
+        hash(upload);
+        if (completed) commit(upload);
+        return upload;
+    }
+
+    private static boolean equals(byte[] a, byte[] b, int length) {
+        for (int i = 0; i < length; i++) if (a[i] != b[i]) return false;
+        return true;
+    }
+
+    private static void copy(File source, long from, long to, FileChannel target) throws IOException {
+        FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+        try {
+            long position = from;
+            while (position < to) {
+                long n = target.transferFrom(channel.position(position), position, to - position);
+                if (n <= 0) throw new EOFException("file " + source + " truncated while copying");
+                position += n;
+            }
+        } finally {
+            Toolkit.close(channel);
+        }
+    }
+
+    /**
+     * 获取最近提交的上传，目标文件在提交后被修改过或者已经开始了新的上传则不算
+     */
+    private synchronized Upload committedOf(File file, long total) {
+        Upload upload = committed.get(file);
+        if (upload == null || uploads.containsKey(file)) return null;
+        if (upload.total == total && file.length() == total && file.lastModified() == upload.modified) return upload;
+        committed.remove(file);
+        return null;
+    }
+
+    /**
+     * 从文件开头起连续接收的内容按顺序计算整个文件的摘要，按顺序上传时刚写入的内容还在页缓存中，
+     * 并行上传时落后的区间等前面的区间到达后再补算，提交时不需要重新读取整个文件。
+     */
+    private void hash(Upload upload) throws IOException {
+        synchronized (upload.digest) {
+            long end;
+            synchronized (upload) {
+                end = upload.extents.endOf(0L);
+            }
+            ByteBuffer bb = null;
+            while (upload.hashed < end) {
+                if (bb == null) bb = ByteBuffer.allocate((int) Math.min(buffer, end - upload.hashed));
+                bb.clear();
+                if (bb.remaining() > end - upload.hashed) bb.limit((int) (end - upload.hashed));
+                int n = upload.channel.read(bb, upload.hashed);
+                if (n < 0) throw new EOFException();
+                bb.flip();
+                upload.digest.update(bb);
+                upload.hashed += n;
+            }
+        }
+    }
+
+    private synchronized Upload open(File file, long total) throws IOException {
+        expire();
+        Upload upload = uploads.get(file);
+        if (upload != null && upload.total != total) {
+            throw new IllegalStateException("file " + file + " is being uploaded with total length " + upload.total);
+        }
+        if (upload != null) return upload;
+        File staging = stagingOf(file);
+        RandomAccessFile raf = new RandomAccessFile(staging, "rw");
+        try {
+            raf.setLength(total);
+        } catch (IOException e) {
+            Toolkit.close(raf);
+            staging.delete();
+            throw e;
+        }
+        upload = new Upload(file, staging, total, raf.getChannel());
+        uploads.put(file, upload);
+        committed.remove(file);
+        return upload;
+    }
+
+    /**
+     * 等待正在写入的分块都写完后把暂存文件重命名为目标文件
+     */
+    private void commit(Upload upload) throws IOException {
+        upload.lock.writeLock().lock();
+        try {
+            synchronized (upload.digest) {
+                if (upload.hashed != upload.total) throw new IOException("digest of " + upload.file + " is incomplete");
+                upload.sha256 = upload.digest.digest();
+            }
+            upload.channel.force(false);
+            upload.channel.close();
+            Toolkit.move(upload.staging, upload.file);
+            upload.modified = upload.file.lastModified();
+            upload.accessed = System.currentTimeMillis();
+            upload.committed = true;
+        } finally {
+            upload.lock.writeLock().unlock();
+            synchronized (this) {
+                uploads.remove(upload.file);
+                if (upload.committed) {
+                    committed.remove(upload.file);
+                    committed.put(upload.file, upload);
+                    if (committed.size() > RECENT) committed.remove(committed.keySet().iterator().next());
+                }
+            }
+            if (!upload.committed) upload.staging.delete();
+        }
+    }
+
+    /**
+     * 放弃上传并删除暂存文件
+     *
+     * @param file 目标文件
+     * @return 是否有正在进行的上传
+     */
+    public boolean abort(File file) {
+        Upload upload;
+        synchronized (this) {
+            committed.remove(file.getAbsoluteFile());
+            upload = uploads.remove(file.getAbsoluteFile());
+        }
+        if (upload == null) return false;
+        discard(upload);
+        return true;
+    }
+
+    private void discard(Upload upload) {
+        upload.lock.writeLock().lock();
+        try {
+            Toolkit.close(upload.channel);
+            upload.staging.delete();
+        } finally {
+            upload.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清理超时的上传
+     */
+    private synchronized void expire() {
+        long deadline = System.currentTimeMillis() - timeout;
+        Iterator<Upload> recent = committed.values().iterator();
+        while (recent.hasNext() && recent.next().accessed < deadline) recent.remove();
+        Iterator<Upload> iterator = uploads.values().iterator();
+        while (iterator.hasNext()) {
+            Upload upload = iterator.next();
+            if (upload.accessed >= deadline || !upload.lock.writeLock().tryLock()) continue;
+            try {
+                iterator.remove();
+                Toolkit.close(upload.channel);
+                upload.staging.delete();
+            } finally {
+                upload.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 暂存文件与目标文件在同一目录下，保证可以原子地重命名，文件名过长时截断并以哈希值区分。
+     */
+    private static File stagingOf(File file) {
+        String name = file.getName();
+        if (name.length() > 64) name = name.substring(0, 64) + "." + Integer.toHexString(file.getName().hashCode());
+        return new File(file.getParentFile(), "." + name + ".partial");
+    }
+
+    @Override
+    public void release() {
+        List<Upload> released;
+        synchronized (this) {
+            released = new ArrayList<>(uploads.values());
+            uploads.clear();
+            committed.clear();
+        }
+        for (Upload upload : released) discard(upload);
+    }
+
+    /**
+     * 正在进行的上传
+     */
+    public static class Upload {
+        private final File file;
+        private final File staging;
+        private final long total;
+        private final FileChannel channel;
+        private final Extents extents = new Extents();
+        /**
+         * 写入分块时持有读锁，多个分块可以并行写入，提交或放弃时持有写锁
+         */
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        /**
+         * 整个文件的摘要，已经计算到 hashed 位置
+         */
+        private final MessageDigest digest = Digests.newDigest();
+        private long hashed;
+        private volatile byte[] sha256;
+        private volatile long accessed = System.currentTimeMillis();
+        /**
+         * 提交后目标文件的最后修改时间
+         */
+        private volatile long modified;
+        private volatile boolean committed;
+        private boolean committing;
+
+        Upload(File file, File staging, long total, FileChannel channel) {
+            this.file = file;
+            this.staging = staging;
+            this.total = total;
+            this.channel = channel;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * @return 是否已经接收完整并提交
+         */
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        /**
+         * @return 提交后整个文件的 SHA-256 摘要，还没有提交时返回{@code null}
+         */
+        public byte[] getDigest() {
+            return sha256;
+        }
+
+        /**
+         * @return 已经接收的区间，以 START-END[,START-END] 表示，还没有接收任何内容时返回空字符串
+         */
+        public synchronized String getReceived() {
+            return extents.toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.fileman.adapter;
+
+import io.fileman.Adapter;
+import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 基于文件内容摘要的强 ETag 适配器，内容相同的文件在不同副本上或者只是被 touch 过时 ETag 不变。
+ * 摘要从持久化的摘要存储中读取，没有记录的文件交给后台线程计算，计算好之前降级为弱 ETag。
+ * 后台计算默认关闭（digest-threads 为 0），此时只有上传过或者完整下载过的文件才有强 ETag。
+ * <p>
+ * 列表中有文件的摘要还在计算时整个列表不能缓存，因此这个适配器没有注册为缺省字段，
+ * 需要在 fields 中以类名显式开启，例如 name,size,time,type,etag,view,io.fileman.adapter.DigestETagAdapter，
+ * 之后请求中以 strong-etag 选择这一列。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class DigestETagAdapter extends Adapter implements ThreadSafe {
+
+    @Override
+    public String column() {
+        return "Strong ETag";
+    }
+
+    @Override
+    public String key() {
+        return "strong-etag";
+    }
+
+    @Override
+    public Object resolve(File file, ResolveContext context) throws IOException {
+        BasicFileAttributes attributes = context.attributesOf(file);
+        byte[] digest = attributes.isRegularFile() ? context.digestOf(file) : null;
+        if (digest != null) return "\"" + Base64.encodeBase64URLSafeString(digest) + "\"";
+        return "W/\"" + attributes.size() + "-" + attributes.lastModifiedTime().toMillis() + "\"";
+    }
+}
@@ -2,8 +2,11 @@ package io.fileman.adapter;
 
 import io.fileman.Adapter;
 import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * ETag适配器
@@ -11,7 +14,7 @@ import java.io.File;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/17
  */
-public class ETagAdapter extends Adapter {
+public class ETagAdapter extends Adapter implements ThreadSafe {
 
     @Override
     public String column() {
@@ -24,7 +27,8 @@ public class ETagAdapter extends Adapter {
     }
 
     @Override
-    public Object resolve(File file, ResolveContext context) {
-        return "W/\"" + file.length() + "-" + file.lastModified() + "\"";
+    public Object resolve(File file, ResolveContext context) throws IOException {
+        BasicFileAttributes attributes = context.attributesOf(file);
+        return "W/\"" + attributes.size() + "-" + attributes.lastModifiedTime().toMillis() + "\"";
     }
 }
@@ -3,8 +3,11 @@ package io.fileman.adapter;
 import io.fileman.Adapter;
 import io.fileman.RenderContext;
 import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
+import io.fileman.Toolkit;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * 名称适配器
@@ -12,7 +15,7 @@ import java.io.File;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class NameAdapter extends Adapter {
+public class NameAdapter extends Adapter implements ThreadSafe {
 
     @Override
     public String column() {
@@ -20,9 +23,16 @@ public class NameAdapter extends Adapter {
     }
 
     @Override
-    public Object render(File file, RenderContext context) {
-        Object name = resolve(file, new ResolveContext(context));
-        return "<a href=\"./" + name + "\">" + name + "</a>";
+    public Object render(File file, RenderContext context) throws IOException {
+        String name = Toolkit.escape(file.getName());
+        boolean directory = context.attributesOf(file).isDirectory();
+        int length = name.length() + (directory ? 1 : 0);
+        StringBuilder html = new StringBuilder(length * 2 + 17);
+        html.append("<a href=\"./").append(name);
+        if (directory) html.append('/');
+        html.append("\">").append(name);
+        if (directory) html.append('/');
+        return html.append("</a>").toString();
     }
 
     @Override
@@ -31,8 +41,8 @@ public class NameAdapter extends Adapter {
     }
 
     @Override
-    public Object resolve(File file, ResolveContext context) {
-        if (file.isDirectory()) return file.getName() + "/";
+    public Object resolve(File file, ResolveContext context) throws IOException {
+        if (context.attributesOf(file).isDirectory()) return file.getName() + "/";
         else return file.getName();
     }
 }
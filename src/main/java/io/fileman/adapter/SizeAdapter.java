@@ -2,8 +2,11 @@ package io.fileman.adapter;
 
 import io.fileman.Adapter;
 import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * 文件大小适配器
@@ -11,7 +14,7 @@ import java.io.File;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class SizeAdapter extends Adapter {
+public class SizeAdapter extends Adapter implements ThreadSafe {
 
     @Override
     public String column() {
@@ -24,8 +27,9 @@ public class SizeAdapter extends Adapter {
     }
 
     @Override
-    public Object resolve(File file, ResolveContext context) {
-        if (file.isDirectory()) return 0L;
-        else return file.length();
+    public Object resolve(File file, ResolveContext context) throws IOException {
+        BasicFileAttributes attributes = context.attributesOf(file);
+        if (attributes.isDirectory()) return 0L;
+        else return attributes.size();
     }
 }
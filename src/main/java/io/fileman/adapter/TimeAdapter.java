@@ -2,9 +2,12 @@ package io.fileman.adapter;
 
 import io.fileman.Adapter;
 import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 
 /**
@@ -13,7 +16,16 @@ import java.util.Date;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class TimeAdapter extends Adapter {
+public class TimeAdapter extends Adapter implements ThreadSafe {
+    /**
+     * 每个线程复用一个日历，按 yyyy-MM-dd HH:mm:ss 直接填充字符，避免每个文件都创建格式化器
+     */
+    private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
 
     @Override
     public String column() {
@@ -26,8 +38,27 @@ public class TimeAdapter extends Adapter {
     }
 
     @Override
-    public Object resolve(File file, ResolveContext context) {
-        Date lastModified = new Date(file.lastModified());
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(lastModified);
+    public Object resolve(File file, ResolveContext context) throws IOException {
+        return format(context.attributesOf(file).lastModifiedTime().toMillis());
+    }
+
+    static String format(long millis) {
+        Calendar calendar = CALENDAR.get();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        // 超出四位数的年份交给 SimpleDateFormat 处理
+        if (year > 9999) return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(millis));
+        char[] chars = {'0', '0', '0', '0', '-', '0', '0', '-', '0', '0', ' ', '0', '0', ':', '0', '0', ':', '0', '0'};
+        fill(chars, 0, 4, year);
+        fill(chars, 5, 2, calendar.get(Calendar.MONTH) + 1);
+        fill(chars, 8, 2, calendar.get(Calendar.DAY_OF_MONTH));
+        fill(chars, 11, 2, calendar.get(Calendar.HOUR_OF_DAY));
+        fill(chars, 14, 2, calendar.get(Calendar.MINUTE));
+        fill(chars, 17, 2, calendar.get(Calendar.SECOND));
+        return new String(chars);
+    }
+
+    private static void fill(char[] chars, int offset, int width, int value) {
+        for (int i = offset + width - 1; i >= offset; i--, value /= 10) chars[i] = (char) ('0' + value % 10);
     }
 }
@@ -2,14 +2,12 @@ package io.fileman.adapter;
 
 import io.fileman.Adapter;
 import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
-public class TypeAdapter extends Adapter {
+public class TypeAdapter extends Adapter implements ThreadSafe {
 
     @Override
     public String column() {
@@ -23,8 +21,8 @@ public class TypeAdapter extends Adapter {
 
     @Override
     public Object resolve(File file, ResolveContext context) throws IOException {
-        Path path = Paths.get(file.toURI());
-        String type = Files.probeContentType(path);
+        if (context.attributesOf(file).isDirectory()) return "";
+        String type = context.contentTypeOf(file, null);
         return type != null ? type : "";
     }
 }
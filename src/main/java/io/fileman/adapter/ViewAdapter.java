@@ -1,11 +1,14 @@
 package io.fileman.adapter;
 
+import io.fileman.ActionContext;
 import io.fileman.Adapter;
 import io.fileman.RenderContext;
 import io.fileman.ResolveContext;
+import io.fileman.ThreadSafe;
+import io.fileman.Toolkit;
 
-import javax.servlet.http.HttpServletRequest;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * 查看适配器
@@ -13,7 +16,8 @@ import java.io.File;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/28
  */
-public class ViewAdapter extends Adapter {
+public class ViewAdapter extends Adapter implements ThreadSafe {
+    private static final String PREFIX = ViewAdapter.class.getName() + ".prefix";
 
     @Override
     public String column() {
@@ -21,9 +25,12 @@ public class ViewAdapter extends Adapter {
     }
 
     @Override
-    public Object render(File file, RenderContext context) {
-        if (file.isDirectory()) return "";
-        return "<a href=\"" + resolve(file, new ResolveContext(context)) + "\" target=\"_blank\">" + key() + "</a>";
+    public Object render(File file, RenderContext context) throws IOException {
+        if (context.attributesOf(file).isDirectory()) return "";
+        String href = Toolkit.escape(hrefOf(file, context));
+        return new StringBuilder(href.length() + 36)
+                .append("<a href=\"").append(href).append("\" target=\"_blank\">").append(key()).append("</a>")
+                .toString();
     }
 
     @Override
@@ -32,19 +39,82 @@ public class ViewAdapter extends Adapter {
     }
 
     @Override
-    public Object resolve(File file, ResolveContext context) {
-        if (file.isDirectory()) return "";
-        File root = context.getRoot();
-        String filemanPath = root.toURI().relativize(file.toURI()).toString();
-        int length = filemanPath.split("/+").length;
+    public Object resolve(File file, ResolveContext context) throws IOException {
+        if (context.attributesOf(file).isDirectory()) return "";
+        return hrefOf(file, context);
+    }
+
+    /**
+     * 同一个目录下的文件的链接只有文件名不同，所以链接前缀按目录计算一次后缓存在上下文的共享属性中，
+     * 前缀不可变，并发合成时各线程最多重复计算一次。
+     *
+     * @param file    文件
+     * @param context 上下文
+     * @return 查看链接
+     */
+    private String hrefOf(File file, ActionContext context) {
+        File directory = file.getParentFile();
+        Prefix prefix = (Prefix) context.getAttribute(PREFIX);
+        if (prefix == null || !prefix.directory.equals(directory)) {
+            prefix = new Prefix(directory, prefixOf(directory, context.getRoot(), context.getRequest().getServletPath()));
+            context.setAttribute(PREFIX, prefix);
+        }
+        String name = file.getName();
+        if (!isSafe(name)) {
+            String filemanPath = context.getRoot().toURI().relativize(file.toURI()).toString();
+            name = filemanPath.substring(filemanPath.lastIndexOf('/') + 1);
+        }
+        return new StringBuilder(prefix.value.length() + name.length()).append(prefix.value).append(name).toString();
+    }
+
+    /**
+     * 计算目录下文件的链接前缀，如 ../../fileman.html#./fileman/directory/
+     *
+     * @param directory   所在目录
+     * @param root        管理根目录
+     * @param servletPath Servlet 路径
+     * @return 链接前缀
+     */
+    private static String prefixOf(File directory, File root, String servletPath) {
+        String directoryPath = root.toURI().relativize(directory.toURI()).toString();
         StringBuilder path = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            path.append("../");
+        // 目录的层级加上文件本身
+        int depth = Toolkit.depth(directoryPath) + 1;
+        for (int i = 0; i < depth; i++) path.append("../");
+        path.append("fileman.html#");
+        String hash = "./" + servletPath + "/" + directoryPath + "/";
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if (c != '/' || path.charAt(path.length() - 1) != '/') path.append(c);
+        }
+        return path.toString();
+    }
+
+    /**
+     * 判断文件名是否不需要 URI 编码
+     *
+     * @param name 文件名
+     * @return 只包含不需要编码的 ASCII 字符时返回{@code true}
+     */
+    private static boolean isSafe(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9') continue;
+            if ("-_.!~*'(),;$&+=@".indexOf(c) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 目录及其下文件的链接前缀
+     */
+    private static class Prefix {
+        private final File directory;
+        private final String value;
+
+        Prefix(File directory, String value) {
+            this.directory = directory;
+            this.value = value;
         }
-        path.append("fileman.html");
-        HttpServletRequest request = context.getRequest();
-        String servletPath = request.getServletPath();
-        String hash = "./" + servletPath + "/" + filemanPath;
-        return (path + "#" + hash).replaceAll("/+", "/");
     }
 }
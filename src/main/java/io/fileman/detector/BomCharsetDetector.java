@@ -0,0 +1,26 @@
+package io.fileman.detector;
+
+import io.fileman.CharsetDetector;
+
+/**
+ * 字节序标记编码探测器
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/17
+ */
+public class BomCharsetDetector implements CharsetDetector {
+
+    @Override
+    public String name() {
+        return "bom";
+    }
+
+    @Override
+    public String detect(byte[] head, int length, boolean whole) {
+        if (length >= 2 && head[0] == (byte) 0xFF && head[1] == (byte) 0xFE) return "UTF-16LE";
+        if (length >= 2 && head[0] == (byte) 0xFE && head[1] == (byte) 0xFF) return "UTF-16BE";
+        if (length >= 3 && head[0] == (byte) 0xEF && head[1] == (byte) 0xBB && head[2] == (byte) 0xBF) return "UTF-8";
+        return null;
+    }
+
+}
@@ -0,0 +1,95 @@
+package io.fileman.detector;
+
+import io.fileman.ContentTypeDetector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 扩展名文件类型探测器，只根据文件扩展名查表，不读取文件内容。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ExtensionContentTypeDetector implements ContentTypeDetector {
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        // 文本
+        register("text/plain", "txt", "text", "log", "out", "ini", "conf", "cfg", "properties", "md", "markdown", "csv", "tsv", "sql", "sh", "bat", "cmd");
+        register("text/html", "html", "htm", "shtml");
+        register("text/css", "css");
+        register("text/xml", "xml", "xsd", "xsl", "pom");
+        register("text/x-java-source", "java");
+        register("text/x-c", "c", "h", "cpp", "hpp", "cc");
+        register("text/x-python", "py");
+        register("text/yaml", "yaml", "yml");
+        register("application/javascript", "js", "mjs");
+        register("application/json", "json", "map");
+        // 图片
+        register("image/png", "png");
+        register("image/jpeg", "jpg", "jpeg", "jpe");
+        register("image/gif", "gif");
+        register("image/bmp", "bmp");
+        register("image/webp", "webp");
+        register("image/svg+xml", "svg");
+        register("image/x-icon", "ico");
+        register("image/tiff", "tif", "tiff");
+        // 音视频
+        register("audio/mpeg", "mp3");
+        register("audio/wav", "wav");
+        register("audio/ogg", "ogg", "oga");
+        register("video/mp4", "mp4", "m4v");
+        register("video/webm", "webm");
+        register("video/x-msvideo", "avi");
+        register("video/quicktime", "mov");
+        register("video/x-flv", "flv");
+        // 文档
+        register("application/pdf", "pdf");
+        register("application/msword", "doc");
+        register("application/vnd.ms-excel", "xls");
+        register("application/vnd.ms-powerpoint", "ppt");
+        register("application/vnd.openxmlformats-officedocument.wordprocessingml.document", "docx");
+        register("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+        register("application/vnd.openxmlformats-officedocument.presentationml.presentation", "pptx");
+        register("application/rtf", "rtf");
+        // 压缩包及二进制
+        register("application/zip", "zip");
+        register("application/java-archive", "jar", "war", "ear");
+        register("application/gzip", "gz", "tgz");
+        register("application/x-bzip2", "bz2");
+        register("application/x-xz", "xz");
+        register("application/x-tar", "tar");
+        register("application/x-7z-compressed", "7z");
+        register("application/x-rar-compressed", "rar");
+        register("application/java-vm", "class");
+        register("application/octet-stream", "bin", "dat", "exe", "dll", "so", "iso", "img");
+        // 字体
+        register("font/woff", "woff");
+        register("font/woff2", "woff2");
+        register("font/ttf", "ttf");
+        register("font/otf", "otf");
+    }
+
+    private static void register(String type, String... extensions) {
+        for (String extension : extensions) TYPES.put(extension, type);
+    }
+
+    @Override
+    public String name() {
+        return "extension";
+    }
+
+    @Override
+    public int sniff() {
+        return 0;
+    }
+
+    @Override
+    public String detect(String filename, byte[] head, int length) {
+        int index = filename.lastIndexOf('.');
+        if (index < 0 || index == filename.length() - 1) return null;
+        return TYPES.get(filename.substring(index + 1).toLowerCase());
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.fileman.detector;
+
+import io.fileman.ContentTypeDetector;
+
+/**
+ * 魔数文件类型探测器，根据文件开头的特征字节判断常见的文件类型。没有特征字节时不做判断，
+ * 不含空字节并不能说明是文本，交给后续的探测器或调用者的缺省类型处理。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class MagicContentTypeDetector implements ContentTypeDetector {
+
+    @Override
+    public String name() {
+        return "magic";
+    }
+
+    @Override
+    public int sniff() {
+        return 512;
+    }
+
+    @Override
+    public String detect(String filename, byte[] head, int length) {
+        if (length == 0) return null;
+        if (starts(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return "image/png";
+        if (starts(head, length, 0xFF, 0xD8, 0xFF)) return "image/jpeg";
+        if (starts(head, length, 'G', 'I', 'F', '8')) return "image/gif";
+        if (starts(head, length, 'B', 'M') && length >= 14) return "image/bmp";
+        if (starts(head, length, 'R', 'I', 'F', 'F') && length >= 12 && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') return "image/webp";
+        if (starts(head, length, '%', 'P', 'D', 'F', '-')) return "application/pdf";
+        if (starts(head, length, 'P', 'K', 0x03, 0x04) || starts(head, length, 'P', 'K', 0x05, 0x06)) return "application/zip";
+        if (starts(head, length, 0x1F, 0x8B)) return "application/gzip";
+        if (starts(head, length, 'B', 'Z', 'h')) return "application/x-bzip2";
+        if (starts(head, length, 0xFD, '7', 'z', 'X', 'Z', 0x00)) return "application/x-xz";
+        if (starts(head, length, '7', 'z', 0xBC, 0xAF, 0x27, 0x1C)) return "application/x-7z-compressed";
+        if (starts(head, length, 'R', 'a', 'r', '!', 0x1A, 0x07)) return "application/x-rar-compressed";
+        if (starts(head, length, 0xCA, 0xFE, 0xBA, 0xBE)) return "application/java-vm";
+        if (starts(head, length, 0x7F, 'E', 'L', 'F')) return "application/octet-stream";
+        if (starts(head, length, 'I', 'D', '3') || starts(head, length, 0xFF, 0xFB)) return "audio/mpeg";
+        if (starts(head, length, 'O', 'g', 'g', 'S')) return "audio/ogg";
+        if (length >= 12 && head[4] == 'f' && head[5] == 't' && head[6] == 'y' && head[7] == 'p') return "video/mp4";
+        if (starts(head, length, '<', '?', 'x', 'm', 'l')) return "text/xml";
+        if (starts(head, length, 0xFF, 0xFE) || starts(head, length, 0xFE, 0xFF)) return "text/plain";
+        for (int i = 0; i < length; i++) if (head[i] == 0) return "application/octet-stream";
+        return null;
+    }
+
+    private static boolean starts(byte[] head, int length, int... magic) {
+        if (length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) if ((head[i] & 0xFF) != magic[i]) return false;
+        return true;
+    }
+
+}
@@ -0,0 +1,49 @@
+package io.fileman.detector;
+
+import io.fileman.CharsetDetector;
+
+/**
+ * UTF-8 编码探测器，出现合法的三字节 UTF-8 序列即判定为 UTF-8，出现非法序列则交由下一个探测器判断。
+ * 探测范围内全是 ASCII 时无法判断编码，交由下一个探测器或缺省编码决定。
+ * 探测范围截断了文件中的一个多字节序列时，已经读到的部分合法即视为合法。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/17
+ */
+public class UTF8CharsetDetector implements CharsetDetector {
+
+    @Override
+    public String name() {
+        return "utf-8";
+    }
+
+    @Override
+    public String detect(byte[] head, int length, boolean whole) {
+        int i = 0;
+        while (i < length) {
+            int read = head[i++] & 0xFF;
+            if (read < 0x80) continue;
+            if (read >= 0xF0) return null;
+            if (0x80 <= read && read <= 0xBF) // 单独出现BF以下的，也算是GBK
+                return null;
+            if (0xC0 <= read && read <= 0xDF) {
+                if (i >= length) return null;
+                read = head[i++] & 0xFF;
+                if (0x80 <= read && read <= 0xBF) continue;// 双字节 (0xC0 - 0xDF) (0x80  - 0xBF),也可能在GB编码内
+                else return null;
+            } else if (0xE0 <= read && read <= 0xEF) {// 也有可能出错，但是几率较小
+                if (i >= length) return null;
+                read = head[i++] & 0xFF;
+                if (0x80 <= read && read <= 0xBF) {
+                    // 第三个字节被探测范围截断，文件还有后续内容时前两个字节合法即视为合法
+                    if (i >= length) return whole ? null : "UTF-8";
+                    read = head[i++] & 0xFF;
+                    if (0x80 <= read && read <= 0xBF) return "UTF-8";
+                    else return null;
+                } else return null;
+            }
+        }
+        return null;
+    }
+
+}
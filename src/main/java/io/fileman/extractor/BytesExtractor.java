@@ -1,27 +1,27 @@
 package io.fileman.extractor;
 
-import io.fileman.ExtractContext;
-import io.fileman.Extractor;
-import io.fileman.Range;
-import io.fileman.Toolkit;
+import io.fileman.*;
+import io.fileman.transmitter.BufferTransmitter;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 
 /**
- * 字节范围文件内容提取器
+ * 字节范围文件内容提取器，多个字节范围时以 multipart/byteranges 格式回应。
  *
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/17
  */
 public class BytesExtractor implements Extractor {
+    private final Transmitter fallback = new BufferTransmitter();
 
     @Override
     public String unit() {
@@ -30,38 +30,93 @@ public class BytesExtractor implements Extractor {
 
     @Override
     public void extract(File file, Range range, ExtractContext context) throws IOException {
-        RandomAccessFile raf = null;
+        Path path = Paths.get(file.toURI());
+        ChannelCache channels = context.getChannels();
+        FileChannel channel = channels != null ? channels.open(file) : FileChannel.open(path, StandardOpenOption.READ);
+        boolean transmitted = false;
         try {
-            raf = new RandomAccessFile(file, "rws");
-            long start = range.getStart();
-            long end = range.getEnd();
-            long total = raf.length();
-            long first = start < 0 ? total < end ? 0 : total - end : start;
-            long last = start < 0 ? total - 1 : Math.min(end, total - 1);
-            long length = last - first + 1;
+            long total = channel.size();
+            List<Range.Section> sections = coalesce(range, total);
             HttpServletResponse response = context.getResponse();
-            if (length <= 0) {
+            if (sections.isEmpty()) {
                 response.sendError(HttpURLConnection.HTTP_NO_CONTENT, "No Content");
                 return;
             }
-            response.setStatus(HttpURLConnection.HTTP_PARTIAL);
-            response.setHeader("Content-Range", "bytes " + first + "-" + last + "/" + total);
-            Path path = Paths.get(file.toURI());
-            String contentType = Files.probeContentType(path);
+            String contentType = context.contentTypeOf(file, channel);
             if (contentType == null) contentType = "application/octet-stream";
-            response.setContentType(contentType);
-            OutputStream out = response.getOutputStream();
-            raf.seek(first);
-            byte[] buf = new byte[1024 * 8];
-            while (length > 0) {
-                int len = raf.read(buf, 0, (int) Math.min(buf.length, length));
-                if (len < 0) break;
-                out.write(buf, 0, len);
-                length -= len;
+            List<Segment> segments = new ArrayList<>();
+            long length = 0;
+            response.setStatus(HttpURLConnection.HTTP_PARTIAL);
+            if (sections.size() == 1) {
+                Range.Section section = sections.get(0);
+                long first = section.getStart();
+                long last = section.getEnd();
+                response.setHeader("Content-Range", "bytes " + first + "-" + last + "/" + total);
+                response.setContentType(contentType);
+                segments.add(new Segment(first, last - first + 1));
+                length = last - first + 1;
+            } else {
+                String boundary = UUID.randomUUID().toString().replace("-", "");
+                response.setContentType("multipart/byteranges; boundary=" + boundary);
+                for (Range.Section section : sections) {
+                    long first = section.getStart();
+                    long last = section.getEnd();
+                    String head = "\r\n--" + boundary + "\r\n"
+                            + "Content-Type: " + contentType + "\r\n"
+                            + "Content-Range: bytes " + first + "-" + last + "/" + total + "\r\n"
+                            + "\r\n";
+                    Segment segment = new Segment(head.getBytes(StandardCharsets.ISO_8859_1), first, last - first + 1);
+                    segments.add(segment);
+                    length += segment.getHead().length + segment.getLength();
+                }
+                Segment trailer = new Segment(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1), 0, 0);
+                segments.add(trailer);
+                length += trailer.getHead().length;
             }
+            response.setHeader("Content-Length", String.valueOf(length));
+            Transmitter transmitter = Toolkit.ifNull(context.getTransmitter(), fallback);
+            transmitted = true;
+            transmitter.transmit(channel, segments, new TransmitContext(context));
         } finally {
-            Toolkit.close(raf);
+            if (!transmitted) Toolkit.close(channel);
+        }
+    }
+
+    /**
+     * 将请求的各个区段换算成文件中的绝对区间，去掉无法满足的区段，
+     * 按文件偏移升序排列并合并相邻或重叠的区段，保证磁盘顺序读取。
+     *
+     * @param range 内容范围
+     * @param total 文件总长度
+     * @return 以 [起始, 结束] 表示的绝对区间
+     */
+    protected List<Range.Section> coalesce(Range range, long total) {
+        List<Range.Section> sections = new ArrayList<>();
+        for (Range.Section section : range.getSections()) {
+            long start = section.getStart();
+            long end = section.getEnd();
+            long first = start < 0 ? total < end ? 0 : total - end : start;
+            long last = start < 0 ? total - 1 : Math.min(end, total - 1);
+            if (last - first + 1 <= 0) continue;
+            sections.add(new Range.Section(first, last));
+        }
+        Collections.sort(sections, new Comparator<Range.Section>() {
+            @Override
+            public int compare(Range.Section a, Range.Section b) {
+                return a.getStart() < b.getStart() ? -1 : a.getStart() == b.getStart() ? 0 : 1;
+            }
+        });
+        LinkedList<Range.Section> merged = new LinkedList<>();
+        for (Range.Section section : sections) {
+            Range.Section previous = merged.peekLast();
+            if (previous != null && section.getStart() <= previous.getEnd() + 1) {
+                merged.removeLast();
+                merged.add(new Range.Section(previous.getStart(), Math.max(previous.getEnd(), section.getEnd())));
+            } else {
+                merged.add(section);
+            }
         }
+        return merged;
     }
 
 }
@@ -0,0 +1,383 @@
+package io.fileman.extractor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 稀疏行偏移索引，每隔固定行数记录一次该行起始的字节偏移，
+ * 定位某一行时只需要跳到最近的检查点再向后扫描少量的行。
+ * 行结束符的判定和 {@link java.io.LineNumberReader} 保持一致：\n、\r 或 \r\n。
+ * 对于只追加写入的文件，索引可以从上次扫描的位置继续扩展，无需重新扫描整个文件。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/12
+ */
+public class LineIndex {
+    /**
+     * 追加校验时比对的末尾字节数
+     */
+    private static final int TAIL = 64;
+    /**
+     * 文件编码
+     */
+    private final String charset;
+    /**
+     * 编码单元字节数，UTF-16 为 2，其余兼容 ASCII 的编码为 1
+     */
+    private final int width;
+    /**
+     * 编码单元是否为大端字节序
+     */
+    private final boolean bigEndian;
+    /**
+     * 检查点间隔行数
+     */
+    private final int interval;
+    /**
+     * 索引对应的文件大小
+     */
+    private long size;
+    /**
+     * 索引对应的文件最后修改时间
+     */
+    private long modified;
+    /**
+     * 文件标识，例如 inode，用于识别文件是否被替换
+     */
+    private String key;
+    /**
+     * 已扫描内容的末尾字节，用于校验文件是否只发生了追加
+     */
+    private byte[] tail = new byte[0];
+    /**
+     * 检查点，第 i 个检查点为第 i * interval 行的起始偏移
+     */
+    private long[] checkpoints = new long[16];
+    private int count;
+    /**
+     * 已扫描的字节偏移
+     */
+    private long scanned;
+    /**
+     * 已经结束的行数
+     */
+    private long lines;
+    /**
+     * 当前行的起始偏移
+     */
+    private long start;
+    /**
+     * 最后一个编码单元是否为 \r
+     */
+    private boolean cr;
+    /**
+     * 最后一个检查点是否由 \r 产生，若紧接着出现 \n 则需要后移
+     */
+    private boolean crCheckpoint;
+
+    public LineIndex(String charset, int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("interval must be positive");
+        this.charset = charset;
+        this.interval = interval;
+        this.width = widthOf(charset);
+        this.bigEndian = isBigEndian(charset);
+    }
+
+    /**
+     * @param charset 编码
+     * @return 编码单元字节数，UTF-16 为 2，其余兼容 ASCII 的编码为 1
+     */
+    public static int widthOf(String charset) {
+        return charset.toUpperCase().startsWith("UTF-16") ? 2 : 1;
+    }
+
+    /**
+     * @param charset 编码
+     * @return 编码单元是否为大端字节序
+     */
+    public static boolean isBigEndian(String charset) {
+        return !"UTF-16LE".equalsIgnoreCase(charset);
+    }
+
+    /**
+     * 读取指定下标处的编码单元
+     */
+    public static int unitOf(byte[] bytes, int i, int width, boolean bigEndian) {
+        return width == 1
+                ? bytes[i]
+                : bigEndian
+                ? (bytes[i] & 0xFF) << 8 | bytes[i + 1] & 0xFF
+                : (bytes[i + 1] & 0xFF) << 8 | bytes[i] & 0xFF;
+    }
+
+    /**
+     * 获取文件开头字节序标记的长度，只有和编码单元宽度吻合的标记才会被跳过
+     */
+    static long bomOf(FileChannel channel, int width) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(3);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) ;
+        byte[] b = head.array();
+        int len = head.position();
+        if (len >= 2 && (b[0] == (byte) 0xFF && b[1] == (byte) 0xFE || b[0] == (byte) 0xFE && b[1] == (byte) 0xFF)) return width == 2 ? 2 : 0;
+        if (len >= 3 && b[0] == (byte) 0xEF && b[1] == (byte) 0xBB && b[2] == (byte) 0xBF) return width == 1 ? 3 : 0;
+        return 0;
+    }
+
+    /**
+     * 从文件开头建立索引
+     *
+     * @param channel  文件通道
+     * @param size     文件大小
+     * @param modified 文件最后修改时间
+     * @param key      文件标识
+     * @param buf      扫描缓冲区，必须是堆缓冲区
+     * @throws IOException I/O 异常
+     */
+    public void build(FileChannel channel, long size, long modified, String key, ByteBuffer buf) throws IOException {
+        long bom = bomOf(channel, width);
+        count = 0;
+        lines = 0;
+        cr = false;
+        crCheckpoint = false;
+        start = bom;
+        scanned = bom;
+        checkpoint(bom);
+        scan(channel, size, buf);
+        this.size = size;
+        this.modified = modified;
+        this.key = key;
+        this.tail = tailOf(channel, scanned);
+    }
+
+    /**
+     * 判断文件相对于该索引是否只发生了追加写入：文件标识不变、大小没有变小并且已扫描内容的末尾字节没有变化。
+     *
+     * @param channel 文件通道
+     * @param size    文件当前大小
+     * @param key     文件当前标识
+     * @return 是否只发生了追加写入
+     * @throws IOException I/O 异常
+     */
+    public boolean isAppendedBy(FileChannel channel, long size, String key) throws IOException {
+        if (this.key == null || !this.key.equals(key)) return false;
+        if (size < this.size) return false;
+        return Arrays.equals(tail, tailOf(channel, scanned));
+    }
+
+    /**
+     * 复制当前索引并从上次扫描的位置继续扫描新追加的内容，当前索引保持不变，因此可以被其他线程继续使用。
+     *
+     * @param channel  文件通道
+     * @param size     文件当前大小
+     * @param modified 文件当前最后修改时间
+     * @param charset  文件当前编码，编码单元宽度必须和当前索引一致
+     * @param buf      扫描缓冲区，必须是堆缓冲区
+     * @return 扩展后的索引
+     * @throws IOException I/O 异常
+     */
+    public LineIndex extend(FileChannel channel, long size, long modified, String charset, ByteBuffer buf) throws IOException {
+        if (widthOf(charset) != width) throw new IllegalArgumentException("incompatible charset " + charset);
+        LineIndex index = new LineIndex(charset, interval);
+        index.checkpoints = Arrays.copyOf(checkpoints, Math.max(count, 16));
+        index.count = count;
+        index.scanned = scanned;
+        index.lines = lines;
+        index.start = start;
+        index.cr = cr;
+        index.crCheckpoint = crCheckpoint;
+        index.key = key;
+        index.scan(channel, size, buf);
+        index.size = size;
+        index.modified = modified;
+        index.tail = tailOf(channel, index.scanned);
+        return index;
+    }
+
+    private byte[] tailOf(FileChannel channel, long end) throws IOException {
+        long from = Math.max(0, end - TAIL);
+        ByteBuffer buf = ByteBuffer.allocate((int) (end - from));
+        while (buf.hasRemaining() && channel.read(buf, from + buf.position()) > 0) ;
+        return buf.position() == buf.capacity() ? buf.array() : Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    /**
+     * 直接在字节上向后跳过若干行，不做任何解码
+     *
+     * @param channel 文件通道
+     * @param from    起始字节偏移，必须位于行首
+     * @param lines   跳过的行数
+     * @param charset 文件编码
+     * @param buf     扫描缓冲区，必须是堆缓冲区
+     * @return 跳过若干行后的字节偏移，不足若干行时为文件末尾
+     * @throws IOException I/O 异常
+     */
+    public static long skip(FileChannel channel, long from, long lines, String charset, ByteBuffer buf) throws IOException {
+        int width = widthOf(charset);
+        boolean bigEndian = isBigEndian(charset);
+        byte[] bytes = buf.array();
+        long position = from;
+        long found = 0;
+        boolean cr = false;
+        if (lines <= 0) return from;
+        while (true) {
+            buf.clear();
+            buf.limit(buf.capacity() - buf.capacity() % width);
+            while (buf.hasRemaining() && channel.read(buf, position + buf.position()) > 0) ;
+            int n = buf.position();
+            int limit = n - n % width;
+            if (limit == 0) return position;
+            for (int i = 0; i < limit; i += width) {
+                int unit = unitOf(bytes, i, width, bigEndian);
+                // 最后一个行结束符为 \r 时，紧跟的 \n 也属于该行结束符
+                if (found == lines) return unit == '\n' && cr ? position + i + width : position + i;
+                if (unit == '\n' && cr) {
+                    cr = false;
+                    continue;
+                }
+                cr = unit == '\r';
+                if (unit == '\r' || unit == '\n') found++;
+                if (found == lines && !cr) return position + i + width;
+            }
+            position += limit;
+            if (limit < n) return position;
+        }
+    }
+
+    /**
+     * 从已扫描的位置继续扫描到指定位置
+     *
+     * @param channel 文件通道
+     * @param to      扫描结束位置
+     * @param buf     扫描缓冲区，必须是堆缓冲区
+     * @throws IOException I/O 异常
+     */
+    protected void scan(FileChannel channel, long to, ByteBuffer buf) throws IOException {
+        byte[] bytes = buf.array();
+        long position = scanned;
+        while (position < to) {
+            buf.clear();
+            if (to - position < buf.capacity()) buf.limit((int) (to - position));
+            while (buf.hasRemaining() && channel.read(buf, position + buf.position()) > 0) ;
+            int n = buf.position();
+            int limit = n - n % width;
+            if (limit == 0) break;
+            for (int i = 0; i < limit; i += width) {
+                int unit = unitOf(bytes, i, width, bigEndian);
+                if (unit == '\r') {
+                    lines++;
+                    start = position + i + width;
+                    cr = true;
+                    crCheckpoint = lines % interval == 0 && checkpoint(start);
+                } else if (unit == '\n') {
+                    if (cr) {
+                        start = position + i + width;
+                        if (crCheckpoint) checkpoints[count - 1] = start;
+                    } else {
+                        lines++;
+                        start = position + i + width;
+                        if (lines % interval == 0) checkpoint(start);
+                    }
+                    cr = false;
+                    crCheckpoint = false;
+                } else {
+                    cr = false;
+                    crCheckpoint = false;
+                }
+            }
+            position += limit;
+            if (limit < n) break;
+        }
+        scanned = position;
+    }
+
+    private boolean checkpoint(long offset) {
+        if (count == checkpoints.length) checkpoints = Arrays.copyOf(checkpoints, count * 2);
+        checkpoints[count++] = offset;
+        return true;
+    }
+
+    /**
+     * @return 总行数，末尾没有行结束符的内容也算一行
+     */
+    public long getTotal() {
+        return lines + (start < scanned ? 1 : 0);
+    }
+
+    /**
+     * 获取不超过指定行的最近检查点的字节偏移
+     *
+     * @param line 行号
+     * @return 检查点字节偏移，从该偏移开始跳过 {@link #skipOf(long)} 行即到达指定行
+     */
+    public long offsetOf(long line) {
+        int index = (int) Math.min(line / interval, count - 1);
+        return checkpoints[index];
+    }
+
+    /**
+     * @param line 行号
+     * @return 从检查点开始需要跳过的行数
+     */
+    public long skipOf(long line) {
+        int index = (int) Math.min(line / interval, count - 1);
+        return line - (long) index * interval;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeUTF(key != null ? key : "");
+        out.writeShort(tail.length);
+        out.write(tail);
+        out.writeLong(scanned);
+        out.writeLong(lines);
+        out.writeLong(start);
+        out.writeBoolean(cr);
+        out.writeBoolean(crCheckpoint);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) out.writeLong(checkpoints[i]);
+    }
+
+    public void read(DataInput in) throws IOException {
+        size = in.readLong();
+        modified = in.readLong();
+        key = in.readUTF();
+        if (key.isEmpty()) key = null;
+        tail = new byte[in.readShort()];
+        in.readFully(tail);
+        scanned = in.readLong();
+        lines = in.readLong();
+        start = in.readLong();
+        cr = in.readBoolean();
+        crCheckpoint = in.readBoolean();
+        count = in.readInt();
+        if (count <= 0) throw new IOException("broken line index");
+        checkpoints = new long[count];
+        for (int i = 0; i < count; i++) checkpoints[i] = in.readLong();
+    }
+
+}
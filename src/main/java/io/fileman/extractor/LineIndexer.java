@@ -0,0 +1,138 @@
+package io.fileman.extractor;
+
+import io.fileman.Sidecars;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 行偏移索引管理器，索引以文件路径、大小及最后修改时间为键缓存在内存中，
+ * 配置了索引目录时同时以旁路文件的形式持久化，重启后无需重新扫描。
+ * 文件只发生追加写入时仅扫描新追加的内容，文件变小或被替换时才重新扫描整个文件。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/12
+ */
+public class LineIndexer {
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 2;
+
+    private final int interval;
+    private final int capacity;
+    private final Sidecars sidecars;
+    private final Map<String, LineIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param interval  检查点间隔行数
+     * @param capacity  内存中最多缓存的索引数量
+     * @param directory 旁路索引文件目录，为 null 时不持久化
+     */
+    public LineIndexer(int interval, int capacity, File directory) {
+        this.interval = interval;
+        this.capacity = capacity;
+        this.sidecars = new Sidecars(directory, ".idx", MAGIC, VERSION);
+    }
+
+    /**
+     * 获取文件的行偏移索引，缓存失效时重新建立
+     *
+     * @param file    文件
+     * @param channel 文件通道
+     * @param charset 文件编码
+     * @return 行偏移索引
+     * @throws IOException I/O 异常
+     */
+    public LineIndex indexOf(File file, FileChannel channel, String charset) throws IOException {
+        return indexOf(file, channel, charset, true);
+    }
+
+    /**
+     * 获取文件的行偏移索引
+     *
+     * @param file    文件
+     * @param channel 文件通道
+     * @param charset 文件编码
+     * @param build   没有可用的索引时是否从头建立，为 false 时只使用已有索引或在已有索引上增量扩展
+     * @return 行偏移索引，不建立索引且没有可用的索引时返回 null
+     * @throws IOException I/O 异常
+     */
+    public LineIndex indexOf(File file, FileChannel channel, String charset, boolean build) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = path.toString();
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        String identity = attributes.fileKey() != null ? attributes.fileKey().toString() : null;
+        LineIndex index;
+        synchronized (this) {
+            index = indexes.get(key);
+        }
+        if (index == null) index = load(key);
+        if (index != null && index.getSize() == size && index.getModified() == modified) {
+            cache(key, index);
+            return index;
+        }
+        // 编码单元宽度不变时才能在原有索引上扩展
+        boolean compatible = index != null && LineIndex.widthOf(charset) == LineIndex.widthOf(index.getCharset());
+        if (compatible && index.isAppendedBy(channel, size, identity)) {
+            index = index.extend(channel, size, modified, charset, ByteBuffer.allocate(1024 * 64));
+        } else if (!build) {
+            return null;
+        } else {
+            index = new LineIndex(charset, interval);
+            index.build(channel, size, modified, identity, ByteBuffer.allocate(1024 * 64));
+        }
+        store(key, index);
+        cache(key, index);
+        return index;
+    }
+
+    private synchronized void cache(String key, LineIndex index) {
+        indexes.put(key, index);
+        Iterator<LineIndex> iterator = indexes.values().iterator();
+        while (indexes.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private LineIndex load(String key) {
+        return sidecars.load(key, new Sidecars.Decoder<LineIndex>() {
+            @Override
+            public LineIndex decode(DataInputStream in) throws IOException {
+                String charset = in.readUTF();
+                int interval = in.readInt();
+                if (interval != LineIndexer.this.interval) return null;
+                LineIndex index = new LineIndex(charset, interval);
+                index.read(in);
+                return index;
+            }
+        });
+    }
+
+    private void store(String key, final LineIndex index) {
+        sidecars.store(key, new Sidecars.Encoder() {
+            @Override
+            public void encode(DataOutputStream out) throws IOException {
+                out.writeUTF(index.getCharset());
+                out.writeInt(index.getInterval());
+                index.write(out);
+            }
+        });
+    }
+
+    /**
+     * 清空内存中的索引
+     */
+    public synchronized void clear() {
+        indexes.clear();
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.fileman.extractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 文件末尾若干行的位置，从文件末尾按块向前扫描行结束符得到，不会读取文件开头的内容。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/15
+ */
+public class LineTail {
+    /**
+     * 第一行的起始字节偏移
+     */
+    private final long offset;
+    /**
+     * 实际行数，文件总行数不足时小于请求的行数
+     */
+    private final long count;
+    /**
+     * 是否扫描到了文件开头，此时实际行数就是文件的总行数
+     */
+    private final boolean head;
+
+    private LineTail(long offset, long count, boolean head) {
+        this.offset = offset;
+        this.count = count;
+        this.head = head;
+    }
+
+    /**
+     * 从文件末尾向前扫描，定位最后若干行
+     *
+     * @param channel 文件通道
+     * @param charset 文件编码
+     * @param size    文件大小
+     * @param lines   需要的行数
+     * @param buf     扫描缓冲区，必须是堆缓冲区且容量为偶数
+     * @return 末尾若干行的位置
+     * @throws IOException I/O 异常
+     */
+    public static LineTail scan(FileChannel channel, String charset, long size, long lines, ByteBuffer buf) throws IOException {
+        int width = LineIndex.widthOf(charset);
+        boolean bigEndian = LineIndex.isBigEndian(charset);
+        long bom = LineIndex.bomOf(channel, width);
+        long end = size - size % width;
+        if (end <= bom || lines <= 0) return new LineTail(end, 0, true);
+        byte[] bytes = buf.array();
+        // 最后一个编码单元尚未处理，用来跳过文件末尾的行结束符
+        boolean last = true;
+        // 上一个处理的编码单元是否为 \n，用于把 \r\n 当作一个行结束符
+        boolean lf = false;
+        long found = 0;
+        long position = end;
+        while (position > bom) {
+            int len = (int) Math.min(buf.capacity() - buf.capacity() % width, position - bom);
+            long from = position - len;
+            buf.clear();
+            buf.limit(len);
+            while (buf.hasRemaining() && channel.read(buf, from + buf.position()) > 0) ;
+            if (buf.hasRemaining()) throw new IOException("file truncated while scanning");
+            for (int i = len - width; i >= 0; i -= width) {
+                int unit = LineIndex.unitOf(bytes, i, width, bigEndian);
+                boolean terminator = unit == '\n' || unit == '\r' && !lf;
+                lf = unit == '\n';
+                if (last) {
+                    last = false;
+                    if (terminator) continue;
+                }
+                if (!terminator) continue;
+                if (++found == lines) return new LineTail(from + i + width, lines, false);
+            }
+            position = from;
+        }
+        return new LineTail(bom, found + 1, true);
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isHead() {
+        return head;
+    }
+
+}
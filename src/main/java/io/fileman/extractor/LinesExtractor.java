@@ -1,72 +1,147 @@
 package io.fileman.extractor;
 
-import io.fileman.ExtractContext;
-import io.fileman.Extractor;
-import io.fileman.Range;
-import io.fileman.Toolkit;
+import io.fileman.*;
+import io.fileman.transmitter.BufferTransmitter;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 
 /**
- * 按行内容提取器
+ * 按行内容提取器，借助稀疏行偏移索引直接定位到起始行附近再读取，
+ * 在还没有索引时读取末尾若干行则先从文件末尾反向扫描，扫描到文件开头说明整个文件不超过这些行，不需要建立索引。
+ * 客户端接受文件编码时行内容以原始字节输出，不做解码。只支持一个行区段，请求多个区段时回应 400。
+ * <p>
+ * 回应的 Content-Range 总是 {@code lines FIRST-LAST/TOTAL}，行号从 0 开始且包含 LAST。
  *
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/27
  */
-public class LinesExtractor implements Extractor {
+public class LinesExtractor implements Extractor, Initialable, Releasable {
+    private final Transmitter fallback = new BufferTransmitter();
+    private LineIndexer indexer = new LineIndexer(1000, 256, null);
 
     @Override
     public String unit() {
         return "lines";
     }
 
+    @Override
+    public void initialize(Configuration configuration) throws Exception {
+        int interval = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("lines-index-interval"), "1000"));
+        int capacity = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("lines-index-cache-size"), "256"));
+        String location = configuration.valueOf("lines-index-location");
+        indexer = new LineIndexer(interval, capacity, Toolkit.isBlank(location) ? null : new File(location));
+    }
+
     @Override
     public void extract(File file, Range range, ExtractContext context) throws IOException {
-        long start = range.getStart();
-        long end = range.getEnd();
-        long total = Toolkit.lines(file);
-        long first = start < 0 ? total < end ? 0 : total - end : start;
-        long last = start < 0 ? total - 1 : Math.min(end, total - 1);
-        HttpServletResponse response = context.getResponse();
-        if (first > last) {
-            response.sendError(HttpURLConnection.HTTP_NO_CONTENT, "No Content");
+        // 多个行区段无法像字节区段那样合并输出，只取第一个会让客户端误以为得到了全部区段，直接拒绝
+        if (range.getSections().size() > 1) {
+            context.getResponse().sendError(HttpURLConnection.HTTP_BAD_REQUEST, "multiple line ranges are not supported");
             return;
         }
-        response.setStatus(HttpURLConnection.HTTP_PARTIAL);
-        response.setHeader("Content-Range", "lines " + first + "-" + last + "/" + total);
         Path path = Paths.get(file.toURI());
-        String contentType = Files.probeContentType(path);
-        if (contentType == null) contentType = "text/plain";
-        response.setContentType(contentType);
-
-        PrintWriter writer = response.getWriter();
-        FileInputStream fis = null;
-        InputStreamReader isr = null;
-        LineNumberReader lnr = null;
+        ChannelCache channels = context.getChannels();
+        FileChannel channel = channels != null ? channels.open(file) : FileChannel.open(path, StandardOpenOption.READ);
+        boolean transmitted = false;
         try {
-            String charset = Toolkit.charsetOf(file);
-            fis = new FileInputStream(file);
-            isr = new InputStreamReader(fis, charset != null ? charset : Charset.defaultCharset().name());
-            lnr = new LineNumberReader(isr);
-            String line;
-            int index = 0;
-            while ((line = lnr.readLine()) != null) {
-                if (index++ < first) continue;
-                writer.println(line);
-                if (index > last) break;
+            long start = range.getStart();
+            long end = range.getEnd();
+            HttpServletResponse response = context.getResponse();
+            // 取末尾若干行时如果还没有索引则从文件末尾反向扫描，不读取文件开头
+            String charset = context.charsetOf(file);
+            LineIndex index = indexer.indexOf(file, channel, charset, start >= 0);
+            if (index == null) {
+                LineTail tail = LineTail.scan(channel, charset, channel.size(), end, ByteBuffer.allocate(1024 * 64));
+                if (tail.getCount() == 0) {
+                    response.sendError(HttpURLConnection.HTTP_NO_CONTENT, "No Content");
+                    return;
+                }
+                // 扫描到文件开头时总行数已知，直接回应绝对行号，否则需要建立索引才能知道起始行号及总行数
+                if (tail.isHead()) {
+                    response.setStatus(HttpURLConnection.HTTP_PARTIAL);
+                    response.setHeader("Content-Range", "lines 0-" + (tail.getCount() - 1) + "/" + tail.getCount());
+                    response.setContentType(contentTypeOf(file, channel, context));
+                    transmitted = write(channel, tail.getOffset(), 0, tail.getCount(), charset, context);
+                    return;
+                }
+                index = indexer.indexOf(file, channel, charset, true);
+            }
+            long total = index.getTotal();
+            long first = start < 0 ? total < end ? 0 : total - end : start;
+            long last = start < 0 ? total - 1 : Math.min(end, total - 1);
+            if (first > last) {
+                response.sendError(HttpURLConnection.HTTP_NO_CONTENT, "No Content");
+                return;
             }
-            writer.flush();
+            response.setStatus(HttpURLConnection.HTTP_PARTIAL);
+            response.setHeader("Content-Range", "lines " + first + "-" + last + "/" + total);
+            response.setContentType(contentTypeOf(file, channel, context));
+            transmitted = write(channel, index.offsetOf(first), index.skipOf(first), last - first + 1, index.getCharset(), context);
         } finally {
-            Toolkit.close(lnr);
-            Toolkit.close(isr);
-            Toolkit.close(fis);
+            if (!transmitted) Toolkit.close(channel);
+        }
+    }
+
+    private String contentTypeOf(File file, FileChannel channel, ExtractContext context) throws IOException {
+        String contentType = context.contentTypeOf(file, channel);
+        return contentType != null ? contentType : "text/plain";
+    }
+
+    /**
+     * 从指定偏移开始跳过若干行后输出若干行。客户端接受文件编码时直接在字节上定位行边界，
+     * 将选中的字节区间原样交给传输器输出；否则逐行解码后按回应的编码重新编码输出。
+     *
+     * @return 文件通道是否已交给传输器
+     */
+    private boolean write(FileChannel channel, long offset, long skip, long count, String charset, ExtractContext context) throws IOException {
+        HttpServletResponse response = context.getResponse();
+        if (accepts(context.getRequest(), charset)) {
+            ByteBuffer buf = ByteBuffer.allocate(1024 * 64);
+            long from = LineIndex.skip(channel, offset, skip, charset, buf);
+            long to = LineIndex.skip(channel, from, count, charset, buf);
+            response.setCharacterEncoding(charset);
+            response.setHeader("Content-Length", String.valueOf(to - from));
+            Transmitter transmitter = Toolkit.ifNull(context.getTransmitter(), fallback);
+            transmitter.transmit(channel, Collections.singletonList(new Segment(from, to - from)), new TransmitContext(context));
+            return true;
+        }
+        PrintWriter writer = response.getWriter();
+        channel.position(offset);
+        LineNumberReader lnr = new LineNumberReader(new InputStreamReader(Channels.newInputStream(channel), charset));
+        while (skip-- > 0 && lnr.readLine() != null) ;
+        String line;
+        while (count-- > 0 && (line = lnr.readLine()) != null) writer.println(line);
+        writer.flush();
+        return false;
+    }
+
+    /**
+     * 判断客户端是否接受指定编码，没有 Accept-Charset 请求头时视为接受
+     */
+    private boolean accepts(HttpServletRequest request, String charset) {
+        String accept = request.getHeader("Accept-Charset");
+        if (Toolkit.isBlank(accept)) return true;
+        for (String value : accept.split(",")) {
+            int index = value.indexOf(';');
+            String name = (index < 0 ? value : value.substring(0, index)).trim();
+            if (name.equals("*") || name.equalsIgnoreCase(charset)) return true;
         }
+        return false;
+    }
+
+    @Override
+    public void release() {
+        indexer.clear();
     }
 
 }
@@ -0,0 +1,129 @@
+package io.fileman.follow;
+
+import io.fileman.Toolkit;
+import io.fileman.extractor.LineIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 一个被跟踪的文件，记录已读取的位置，每次检查只读取新追加的内容并拆分成行广播给所有跟踪者。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/16
+ */
+class Feed {
+    static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final long HEARTBEAT_INTERVAL = 15 * 1000L;
+    private static final int MAX_READ = 1024 * 1024;
+
+    private final File file;
+    private final Charset charset;
+    private final int width;
+    private final boolean bigEndian;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private long offset;
+    private boolean cr;
+    private long heartbeat = System.currentTimeMillis();
+
+    Feed(File file, String charset) {
+        this.file = file;
+        this.charset = Charset.forName(charset);
+        this.width = LineIndex.widthOf(charset);
+        this.bigEndian = LineIndex.isBigEndian(charset);
+        this.offset = file.length() - file.length() % width;
+    }
+
+    void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    boolean isIdle() {
+        return subscribers.isEmpty();
+    }
+
+    /**
+     * 断开超时没有写出数据的跟踪者
+     */
+    void expire() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) subscriber.expire(now);
+    }
+
+    /**
+     * 检查文件是否有新追加的内容，有则读取并广播，文件变小时视为被截断，从头开始读取。
+     */
+    void poll() throws IOException {
+        if (subscribers.isEmpty()) return;
+        long size = file.length();
+        if (size < offset) {
+            offset = 0;
+            cr = false;
+            line.reset();
+        }
+        long end = Math.min(size - size % width, offset + MAX_READ);
+        if (end <= offset) {
+            if (System.currentTimeMillis() - heartbeat >= HEARTBEAT_INTERVAL) broadcast(HEARTBEAT);
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) (end - offset));
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            while (buf.hasRemaining() && channel.read(buf, offset + buf.position()) > 0) ;
+        } finally {
+            Toolkit.close(channel);
+        }
+        int len = buf.position() - buf.position() % width;
+        offset += len;
+        byte[] events = split(buf.array(), len);
+        if (events.length > 0) broadcast(events);
+    }
+
+    /**
+     * 将新读取的字节拆分成完整的行并编码成事件，不完整的行留到下次读取
+     */
+    private byte[] split(byte[] bytes, int len) {
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        for (int i = 0; i < len; i += width) {
+            int unit = LineIndex.unitOf(bytes, i, width, bigEndian);
+            if (unit == '\n' && cr) {
+                cr = false;
+                continue;
+            }
+            cr = unit == '\r';
+            if (unit == '\r' || unit == '\n') {
+                String text = new String(line.toByteArray(), charset);
+                line.reset();
+                byte[] event = ("data: " + text + "\n\n").getBytes(StandardCharsets.UTF_8);
+                events.write(event, 0, event.length);
+            } else {
+                line.write(bytes, i, width);
+            }
+        }
+        return events.toByteArray();
+    }
+
+    private void broadcast(byte[] events) {
+        heartbeat = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) subscriber.offer(events);
+    }
+
+    void close() {
+        for (Subscriber subscriber : subscribers) subscriber.close();
+        subscribers.clear();
+    }
+
+}
@@ -0,0 +1,130 @@
+package io.fileman.follow;
+
+import io.fileman.Releasable;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件跟踪器，以 Server-Sent Events 的形式持续推送文件新追加的行。
+ * 同一个文件的所有跟踪者共享一个读取者，由一个后台线程定期检查文件大小并只读取新追加的内容，
+ * 跟踪者积压的数据超过上限时会被断开，而不是无限制地缓冲。
+ * <p>
+ * 容器的异步超时不会因为写出数据而延后，长期跟踪必然会超时，因此关闭容器的超时。
+ * 改为由跟踪者自己计时：有数据等待写出却超过超时时间没有写出任何数据时断开，
+ * 空闲的文件每隔一段时间会推送心跳，正常的客户端因此总能刷新计时。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/16
+ */
+public class Follower implements Releasable {
+    private final Map<String, Feed> feeds = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final int backlog;
+    private final long timeout;
+
+    /**
+     * @param interval 检查文件变化的间隔毫秒数
+     * @param backlog  每个跟踪者最多积压的字节数
+     * @param timeout  跟踪者没有写出任何数据的最长毫秒数，不大于 0 时不限制
+     */
+    public Follower(long interval, int backlog, long timeout) {
+        this.backlog = backlog;
+        this.timeout = timeout;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fileman-follow");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 开启异步回应并跟踪指定文件，从文件当前末尾开始推送新追加的行
+     *
+     * @param file     文件
+     * @param charset  文件编码
+     * @param request  请求
+     * @param response 回应
+     * @throws IOException I/O 异常
+     */
+    public void follow(File file, String charset, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        ServletOutputStream out = response.getOutputStream();
+        String key = file.getAbsoluteFile().toPath().normalize().toString();
+        Subscriber subscriber;
+        // 取得或创建读取者与加入跟踪者在同一个锁内完成，否则检查线程可能把刚创建还没有跟踪者的读取者当作空闲移除
+        synchronized (this) {
+            Feed feed = feeds.get(key);
+            if (feed == null) feeds.put(key, feed = new Feed(file, charset));
+            subscriber = new Subscriber(feed, async, out, backlog, timeout);
+            async.addListener(subscriber);
+            out.setWriteListener(subscriber);
+            feed.subscribe(subscriber);
+        }
+        subscriber.offer(Feed.HEARTBEAT);
+    }
+
+    private void poll() {
+        List<Feed> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(feeds.values());
+        }
+        for (Feed feed : snapshot) {
+            try {
+                feed.expire();
+                feed.poll();
+            } catch (Exception e) {
+                feed.close();
+            }
+            if (feed.isIdle()) {
+                synchronized (this) {
+                    if (feed.isIdle()) feeds.values().remove(feed);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 正在被跟踪的文件数量
+     */
+    public synchronized int getFeeds() {
+        return feeds.size();
+    }
+
+    @Override
+    public void release() {
+        scheduler.shutdownNow();
+        List<Feed> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(feeds.values());
+            feeds.clear();
+        }
+        for (Feed feed : snapshot) feed.close();
+    }
+
+}
@@ -0,0 +1,126 @@
+package io.fileman.follow;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件跟踪者，以非阻塞的方式把事件写出，积压的字节数超过上限或者超时没有写出数据时断开。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/16
+ */
+class Subscriber implements WriteListener, AsyncListener {
+    private final Feed feed;
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final int backlog;
+    private final long timeout;
+    private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    /**
+     * 最近一次写出数据或者开始有数据等待写出的时间
+     */
+    private volatile long progress = System.currentTimeMillis();
+    private volatile boolean closed;
+    private boolean dirty;
+
+    Subscriber(Feed feed, AsyncContext async, ServletOutputStream out, int backlog, long timeout) {
+        this.feed = feed;
+        this.async = async;
+        this.out = out;
+        this.backlog = backlog;
+        this.timeout = timeout;
+    }
+
+    void offer(byte[] events) {
+        if (closed) return;
+        long before = pending.getAndAdd(events.length);
+        if (before == 0) progress = System.currentTimeMillis();
+        if (before + events.length > backlog) {
+            close();
+            return;
+        }
+        queue.offer(events);
+        flush();
+    }
+
+    /**
+     * 有数据等待写出却超过超时时间没有写出任何数据时断开
+     *
+     * @param now 当前时间
+     */
+    void expire(long now) {
+        if (timeout > 0 && pending.get() > 0 && now - progress >= timeout) close();
+    }
+
+    private synchronized void flush() {
+        try {
+            while (!closed && out.isReady()) {
+                byte[] events = queue.poll();
+                if (events == null) {
+                    if (dirty) {
+                        dirty = false;
+                        out.flush();
+                    }
+                    return;
+                }
+                out.write(events);
+                progress = System.currentTimeMillis();
+                pending.addAndGet(-events.length);
+                dirty = true;
+            }
+        } catch (IOException | IllegalStateException e) {
+            close();
+        }
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        feed.unsubscribe(this);
+        queue.clear();
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            // 已经结束
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        flush();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        closed = true;
+        feed.unsubscribe(this);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+}
@@ -2,80 +2,195 @@ package io.fileman.formatter;
 
 import io.fileman.Fileman;
 import io.fileman.FormatContext;
-import io.fileman.Formatter;
+import io.fileman.FormatStream;
+import io.fileman.StreamFormatter;
 import io.fileman.Toolkit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
- * HTML格式化器
+ * HTML格式化器，页面的静态部分预先编码成字节，表头按列缓存，每行先写入缓冲区再成块输出，
+ * 输出前几行后立即刷新，让浏览器尽早开始渲染大目录。
  *
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class HtmlFormatter implements Formatter {
+public class HtmlFormatter implements StreamFormatter {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] HEAD = bytesOf("<html>\n<head>\n");
+    private static final byte[] ICON = bytesOf("    <link rel=\"Shortcut Icon\" href=\"");
+    private static final byte[] TABLE = bytesOf("    <meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\"/>\n</head>\n<body>\n");
+    private static final byte[] PARENT = bytesOf("    </thead>\n    <tr>\n        <td>\n            <a href=\"../\">Parent Directory</a>\n        </td>\n    </tr>\n");
+    private static final byte[] FOOT = bytesOf("</table>\n</body>\n</html>\n");
+    /**
+     * 输出多少行后第一次刷新
+     */
+    private static final int EARLY_ROWS = 32;
+    /**
+     * 缓冲区达到多少字符后成块输出
+     */
+    private static final int BLOCK_SIZE = 8 * 1024;
+    /**
+     * 按列缓存的表头
+     */
+    private static final Map<List<String>, byte[]> HEADERS = new LinkedHashMap<>(16, 0.75f, true);
 
     @Override
     public void format(Fileman fileman, FormatContext context) throws IOException {
+        FormatStream stream = open(fileman, context);
+        if (stream == null) return;
+        List<Fileman> children = fileman.getChildren();
+        for (int i = 0; children != null && i < children.size(); i++) stream.write(children.get(i));
+        stream.close();
+    }
+
+    @Override
+    public FormatStream open(Fileman fileman, FormatContext context) throws IOException {
         HttpServletRequest request = context.getRequest();
         HttpServletResponse response = context.getResponse();
 
         String requestPath = request.getRequestURI();
-        // 如果路径后面没有 / 则重定向到以 / 结尾的路径上
-        if (!requestPath.endsWith("/")) {
+        String method = request.getMethod();
+        boolean slashed = requestPath.endsWith("/");
+        // 如果路径后面没有 / 则重定向到以 / 结尾的路径上，上传结果等非 GET 请求的回应不能重定向
+        if (!slashed && ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method))) {
             response.sendRedirect("./" + requestPath.substring(requestPath.lastIndexOf('/') + 1) + "/");
-            return;
+            return null;
         }
 
         response.setContentType("text/html");
-        PrintWriter pw = response.getWriter();
-        String path = Toolkit.ifEmpty(fileman.getPath(), "/");
+        response.setCharacterEncoding(UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        String path = Toolkit.escape(Toolkit.ifEmpty(fileman.getPath(), "/"));
 
-        int length = fileman.getPath().split("/+").length;
-        StringBuilder parents = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            parents.append("../");
+        StringBuilder buffer = new StringBuilder(BLOCK_SIZE + 1024);
+        out.write(HEAD);
+        // 没有重定向时以 base 让页面中的相对链接仍然相对于这个目录
+        if (!slashed) {
+            String name = requestPath.substring(requestPath.lastIndexOf('/') + 1);
+            buffer.append("    <base href=\"./").append(Toolkit.escape(name)).append("/\">\n");
+            write(out, buffer);
         }
+        out.write(ICON);
+        int length = Toolkit.depth(fileman.getPath()) + 1;
+        for (int i = 0; i < length; i++) buffer.append("../");
+        buffer.append("fileman.ico\">\n");
+        buffer.append("    <title>Index of ").append(path).append("</title>\n");
+        write(out, buffer);
+        out.write(TABLE);
+        buffer.append("<h1>Index of ").append(path).append("</h1>\n");
+        buffer.append("<table cellspacing=\"10\" align=\"left\">\n");
+        buffer.append("    <thead>\n");
+        write(out, buffer);
+
+        List<String> columns = new ArrayList<>(fileman.getProperties().keySet());
+        out.write(headerOf(columns));
+        out.write(PARENT);
+        return new HtmlFormatStream(out, buffer, columns, fileman, request, response);
+    }
 
-        pw.println("<html>");
-        pw.println("<head>");
-        pw.println("    <link rel=\"Shortcut Icon\" href=\"" + parents + "fileman.ico\">");
-        pw.println("    <title>Index of " + path + "</title>");
-        pw.println("    <meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\"/>");
-        pw.println("</head>");
-        pw.println("<body>");
-        pw.println("<h1>Index of " + path + "</h1>");
-        pw.println("<table cellspacing=\"10\" align=\"left\">");
-        pw.println("    <thead>");
-        Set<String> columns = fileman.getProperties().keySet();
-        int index = 0;
-        for (String column : columns) {
-            if (index++ == 0) pw.println("        <th align=\"left\">" + column + "</th>");
-            else pw.println("        <th>" + column + "</th>");
+    private static byte[] headerOf(List<String> columns) {
+        synchronized (HEADERS) {
+            byte[] header = HEADERS.get(columns);
+            if (header != null) return header;
         }
-        pw.println("    </thead>");
-        pw.println("    <tr>");
-        pw.println("        <td>");
-        pw.println("            <a href=\"../\">Parent Directory</a>");
-        pw.println("        </td>");
-        List<Fileman> children = fileman.getChildren();
-        for (Fileman child : children) {
-            pw.println("    </tr>");
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            builder.append(i == 0 ? "        <th align=\"left\">" : "        <th>").append(Toolkit.escape(columns.get(i))).append("</th>\n");
+        }
+        byte[] header = bytesOf(builder.toString());
+        synchronized (HEADERS) {
+            HEADERS.put(columns, header);
+            if (HEADERS.size() > 16) {
+                HEADERS.remove(HEADERS.keySet().iterator().next());
+            }
+        }
+        return header;
+    }
+
+    private static void write(OutputStream out, StringBuilder buffer) throws IOException {
+        if (buffer.length() == 0) return;
+        out.write(buffer.toString().getBytes(UTF_8));
+        buffer.setLength(0);
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    /**
+     * HTML 格式化输出流，每个子文件输出为表格的一行，属性值是渲染器渲染好的 HTML 片段。
+     */
+    private static class HtmlFormatStream implements FormatStream {
+        private final OutputStream out;
+        private final StringBuilder buffer;
+        private final List<String> columns;
+        private final Fileman fileman;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private int rows;
+
+        HtmlFormatStream(OutputStream out, StringBuilder buffer, List<String> columns, Fileman fileman, HttpServletRequest request, HttpServletResponse response) {
+            this.out = out;
+            this.buffer = buffer;
+            this.columns = columns;
+            this.fileman = fileman;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public void write(Fileman child) throws IOException {
+            buffer.append("    <tr>\n");
             Map<String, Object> properties = child.getProperties();
-            for (String column : columns) {
-                pw.println("        <td>" + properties.get(column) + "</td>");
+            // 上传失败的文件没有属性，输出文件名及失败原因
+            if (child.getError() != null) {
+                String path = child.getPath();
+                buffer.append("        <td>").append(Toolkit.escape(path.substring(path.lastIndexOf('/') + 1))).append("</td>\n");
+                buffer.append("        <td colspan=\"").append(Math.max(1, columns.size() - 1)).append("\">").append(Toolkit.escape(child.getError())).append("</td>\n");
+            }
+            for (int i = 0; properties != null && i < columns.size(); i++) {
+                buffer.append("        <td>").append(properties.get(columns.get(i))).append("</td>\n");
+            }
+            buffer.append("    </tr>\n");
+            if (++rows == EARLY_ROWS) {
+                // 显式刷新回应让浏览器尽早渲染，被捕获用于缓存时刷新后仍继续捕获，完整的列表照样缓存
+                HtmlFormatter.write(out, buffer);
+                response.flushBuffer();
+            } else if (buffer.length() >= BLOCK_SIZE) {
+                HtmlFormatter.write(out, buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // 分页时输出下一页链接，保留每页数量、排序方式及字段
+            if (fileman.getNext() != null) {
+                StringBuilder query = new StringBuilder("?cursor=").append(fileman.getNext());
+                String limit = request.getParameter("limit");
+                if (limit != null) query.append("&limit=").append(URLEncoder.encode(limit, "UTF-8"));
+                String sort = request.getParameter("sort");
+                if (sort != null) query.append("&sort=").append(URLEncoder.encode(sort, "UTF-8"));
+                String fields = request.getParameter("fields");
+                if (fields != null) query.append("&fields=").append(URLEncoder.encode(fields, "UTF-8"));
+                buffer.append("    <tr>\n");
+                buffer.append("        <td>\n");
+                buffer.append("            <a href=\"./").append(Toolkit.escape(query.toString())).append("\">Next</a>\n");
+                buffer.append("        </td>\n");
+                buffer.append("    </tr>\n");
             }
-            pw.println("    </tr>");
+            HtmlFormatter.write(out, buffer);
+            out.write(FOOT);
+            out.flush();
         }
-        pw.println("</table>");
-        pw.println("</body>");
-        pw.println("</html>");
-        pw.flush();
     }
 }
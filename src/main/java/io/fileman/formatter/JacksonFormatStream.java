@@ -0,0 +1,63 @@
+package io.fileman.formatter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.fileman.Fileman;
+import io.fileman.FormatStream;
+
+import java.io.IOException;
+
+/**
+ * 基于 Jackson 生成器的格式化输出流，输出结构和直接序列化 {@link Fileman} 一致。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+class JacksonFormatStream implements FormatStream {
+    protected final JsonGenerator generator;
+    protected final Fileman fileman;
+
+    JacksonFormatStream(JsonGenerator generator, Fileman fileman) throws IOException {
+        this.generator = generator;
+        this.fileman = fileman;
+        this.generator.useDefaultPrettyPrinter();
+        this.generator.writeStartObject();
+        this.generator.writeStringField("uri", fileman.getUri());
+        this.generator.writeStringField("path", fileman.getPath());
+        this.generator.writeBooleanField("folder", fileman.isFolder());
+        this.generator.writeObjectField("properties", fileman.getProperties());
+        this.generator.writeFieldName("children");
+        this.start();
+    }
+
+    /**
+     * 开始输出子文件列表
+     *
+     * @throws IOException I/O 异常
+     */
+    protected void start() throws IOException {
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void write(Fileman child) throws IOException {
+        generator.writeObject(child);
+    }
+
+    /**
+     * 结束输出子文件列表
+     *
+     * @throws IOException I/O 异常
+     */
+    protected void end() throws IOException {
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        end();
+        if (fileman.getTotal() != null) generator.writeNumberField("total", fileman.getTotal());
+        if (fileman.getNext() != null) generator.writeStringField("next", fileman.getNext());
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -4,7 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.fileman.Fileman;
 import io.fileman.FormatContext;
-import io.fileman.Formatter;
+import io.fileman.FormatStream;
+import io.fileman.StreamFormatter;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -17,8 +18,9 @@ import java.io.PrintWriter;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class JsonFormatter implements Formatter {
-    private final ObjectWriter writer = new ObjectMapper().writerWithDefaultPrettyPrinter();
+public class JsonFormatter implements StreamFormatter {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
 
     @Override
     public void format(Fileman fileman, FormatContext context) throws IOException {
@@ -28,4 +30,12 @@ public class JsonFormatter implements Formatter {
         this.writer.writeValue(out, fileman);
     }
 
+    @Override
+    public FormatStream open(Fileman fileman, FormatContext context) throws IOException {
+        HttpServletResponse response = context.getResponse();
+        response.setContentType("application/json");
+        PrintWriter out = response.getWriter();
+        return new JacksonFormatStream(mapper.getFactory().createGenerator(out), fileman);
+    }
+
 }
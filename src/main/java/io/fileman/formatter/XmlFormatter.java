@@ -2,11 +2,14 @@ package io.fileman.formatter;
 
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
 import io.fileman.Fileman;
 import io.fileman.FormatContext;
-import io.fileman.Formatter;
+import io.fileman.FormatStream;
+import io.fileman.StreamFormatter;
 
 import javax.servlet.http.HttpServletResponse;
+import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.io.PrintWriter;
 
@@ -16,8 +19,9 @@ import java.io.PrintWriter;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class XmlFormatter implements Formatter {
-    private final ObjectWriter writer = new XmlMapper().writerWithDefaultPrettyPrinter();
+public class XmlFormatter implements StreamFormatter {
+    private final XmlMapper mapper = new XmlMapper();
+    private final ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
 
     @Override
     public void format(Fileman fileman, FormatContext context) throws IOException {
@@ -27,4 +31,40 @@ public class XmlFormatter implements Formatter {
         writer.writeValue(out, fileman);
     }
 
+    @Override
+    public FormatStream open(Fileman fileman, FormatContext context) throws IOException {
+        HttpServletResponse response = context.getResponse();
+        response.setContentType("application/xml");
+        PrintWriter out = response.getWriter();
+        ToXmlGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.setNextName(new QName(Fileman.class.getSimpleName()));
+        return new XmlFormatStream(generator, fileman);
+    }
+
+    /**
+     * XML 格式化输出流，子文件列表和序列化时一样包装在 children 元素中。
+     */
+    private static class XmlFormatStream extends JacksonFormatStream {
+
+        XmlFormatStream(ToXmlGenerator generator, Fileman fileman) throws IOException {
+            super(generator, fileman);
+        }
+
+        @Override
+        protected void start() throws IOException {
+            generator.writeStartObject();
+        }
+
+        @Override
+        public void write(Fileman child) throws IOException {
+            generator.writeFieldName("children");
+            generator.writeObject(child);
+        }
+
+        @Override
+        protected void end() throws IOException {
+            generator.writeEndObject();
+        }
+    }
+
 }
@@ -4,7 +4,8 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import io.fileman.Fileman;
 import io.fileman.FormatContext;
-import io.fileman.Formatter;
+import io.fileman.FormatStream;
+import io.fileman.StreamFormatter;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -16,8 +17,9 @@ import java.io.PrintWriter;
  * @author 杨昌沛 646742615@qq.com
  * 2018/9/14
  */
-public class YamlFormatter implements Formatter {
-    private final ObjectWriter writer = new YAMLMapper().writerWithDefaultPrettyPrinter();
+public class YamlFormatter implements StreamFormatter {
+    private final YAMLMapper mapper = new YAMLMapper();
+    private final ObjectWriter writer = mapper.writerWithDefaultPrettyPrinter();
 
     @Override
     public void format(Fileman fileman, FormatContext context) throws IOException {
@@ -27,4 +29,12 @@ public class YamlFormatter implements Formatter {
         writer.writeValue(out, fileman);
     }
 
+    @Override
+    public FormatStream open(Fileman fileman, FormatContext context) throws IOException {
+        HttpServletResponse response = context.getResponse();
+        response.setContentType("application/yaml");
+        PrintWriter out = response.getWriter();
+        return new JacksonFormatStream(mapper.getFactory().createGenerator(out), fileman);
+    }
+
 }
@@ -73,6 +73,16 @@ public @interface EnableFileman {
      */
     int buffer() default 1024 * 8;
 
+    /**
+     * @return Download transmitter name
+     */
+    String transmitter() default "channel";
+
+    /**
+     * @return Async download enabled, requires asyncSupported
+     */
+    boolean async() default false;
+
     /**
      * @return File fields
      */
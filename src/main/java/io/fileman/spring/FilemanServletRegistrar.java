@@ -65,6 +65,8 @@ public class FilemanServletRegistrar implements ImportBeanDefinitionRegistrar {
 
         parameters.put("root", attributes.getString("root"));
         parameters.put("buffer", attributes.getNumber("buffer").toString());
+        parameters.put("transmitter", attributes.getString("transmitter"));
+        parameters.put("async", String.valueOf(attributes.getBoolean("async")));
         parameters.put("fields", Toolkit.join(attributes.getStringArray("fields"), ","));
         parameters.put("ranges", Toolkit.join(attributes.getStringArray("ranges"), ","));
         parameters.put("interceptors", Toolkit.join(attributes.getStringArray("interceptors"), ","));
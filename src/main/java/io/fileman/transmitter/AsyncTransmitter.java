@@ -0,0 +1,198 @@
+package io.fileman.transmitter;
+
+import io.fileman.*;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步传输器，开启 Servlet 异步模式后由 {@link WriteListener} 的可写通知驱动，
+ * 在一个小的 I/O 线程池中分块读取文件并写出，只有在数据真正流动时才占用线程。
+ * 当请求不支持异步时退化为被包装的同步传输器。
+ * <p>
+ * 容器的异步超时从开启异步时开始计算，不会因为写出数据而延后，无法区分下载大文件的客户端和停滞的客户端，
+ * 因此关闭容器的超时，改为在超过 async-timeout 毫秒没有写出任何数据时结束传输，释放异步上下文及文件通道。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/9
+ */
+public class AsyncTransmitter implements Transmitter, Initialable, Releasable {
+    private final Transmitter delegate;
+    private ScheduledExecutorService executor;
+    private int buffer = 1024 * 8;
+    private long timeout = 60 * 1000L;
+
+    public AsyncTransmitter(Transmitter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String name() {
+        return "async";
+    }
+
+    @Override
+    public void initialize(Configuration configuration) throws Exception {
+        buffer = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("buffer"), "" + 1024 * 8));
+        timeout = Long.valueOf(Toolkit.ifBlank(configuration.valueOf("async-timeout"), "" + 60 * 1000));
+        int threads = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("async-threads"), "4"));
+        executor = Executors.newScheduledThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fileman-async-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void transmit(FileChannel channel, List<Segment> segments, TransmitContext context) throws IOException {
+        HttpServletRequest request = context.getRequest();
+        if (!request.isAsyncSupported()) {
+            delegate.transmit(channel, segments, context);
+            return;
+        }
+        AsyncContext async = request.isAsyncStarted() ? request.getAsyncContext() : request.startAsync();
+        async.setTimeout(0);
+        ServletOutputStream out = context.getResponse().getOutputStream();
+        Transmission transmission = new Transmission(channel, segments.iterator(), async, out);
+        transmission.watch(timeout);
+        out.setWriteListener(transmission);
+    }
+
+    @Override
+    public void release() {
+        if (executor != null) executor.shutdownNow();
+        Toolkit.release(delegate);
+    }
+
+    /**
+     * 一次异步传输，每当输出流可写时提交到 I/O 线程池中写出数据直到输出流不再可写，
+     * 每次写出数据都会延后空闲超时。
+     */
+    private class Transmission implements WriteListener, Runnable {
+        private final FileChannel channel;
+        private final Iterator<Segment> segments;
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final ByteBuffer buf;
+        private byte[] head;
+        private long position;
+        private long length;
+        private volatile long progress = System.currentTimeMillis();
+        private volatile boolean completed;
+        private ScheduledFuture<?> watchdog;
+
+        Transmission(FileChannel channel, Iterator<Segment> segments, AsyncContext async, ServletOutputStream out) {
+            this.channel = channel;
+            this.segments = segments;
+            this.async = async;
+            this.out = out;
+            this.buf = ByteBuffer.allocate(buffer);
+        }
+
+        @Override
+        public void onWritePossible() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                onError(e);
+            }
+        }
+
+        /**
+         * 在空闲超过超时时间后结束传输，超时时间不大于 0 时不限制
+         *
+         * @param delay 距离下次检查的毫秒数
+         */
+        private synchronized void watch(long delay) {
+            if (completed || timeout <= 0) return;
+            try {
+                watchdog = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        long idle = System.currentTimeMillis() - progress;
+                        if (idle >= timeout) complete();
+                        else watch(timeout - idle);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                complete();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!completed && out.isReady()) {
+                    progress = System.currentTimeMillis();
+                    if (head != null) {
+                        out.write(head);
+                        head = null;
+                        continue;
+                    }
+                    if (length <= 0) {
+                        if (!segments.hasNext()) {
+                            complete();
+                            return;
+                        }
+                        Segment segment = segments.next();
+                        head = segment.getHead().length > 0 ? segment.getHead() : null;
+                        position = segment.getPosition();
+                        length = segment.getLength();
+                        continue;
+                    }
+                    buf.clear();
+                    if (length < buf.capacity()) buf.limit((int) length);
+                    int len = channel.read(buf, position);
+                    if (len < 0) {
+                        complete();
+                        return;
+                    }
+                    out.write(buf.array(), 0, len);
+                    position += len;
+                    length -= len;
+                }
+            } catch (Throwable e) {
+                onError(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            complete();
+        }
+
+        private void complete() {
+            synchronized (this) {
+                if (completed) return;
+                completed = true;
+                if (watchdog != null) watchdog.cancel(false);
+            }
+            Toolkit.close(channel);
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                // 已经结束
+            }
+        }
+    }
+
+}
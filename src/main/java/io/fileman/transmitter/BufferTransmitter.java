@@ -0,0 +1,103 @@
+package io.fileman.transmitter;
+
+import io.fileman.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓冲区传输器，从池化的直接缓冲区中借出缓冲区进行拷贝，避免每次下载都分配新的缓冲区。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/8
+ */
+public class BufferTransmitter implements Transmitter, Initialable, Releasable {
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private int buffer = 1024 * 8;
+    private int capacity = 64;
+
+    @Override
+    public String name() {
+        return "buffer";
+    }
+
+    @Override
+    public void initialize(Configuration configuration) throws Exception {
+        buffer = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("buffer"), "" + 1024 * 8));
+        capacity = Integer.valueOf(Toolkit.ifBlank(configuration.valueOf("buffer-pool-size"), "64"));
+    }
+
+    @Override
+    public void transmit(FileChannel channel, List<Segment> segments, TransmitContext context) throws IOException {
+        try {
+            OutputStream out = context.getResponse().getOutputStream();
+            WritableByteChannel target = out instanceof WritableByteChannel ? (WritableByteChannel) out : Channels.newChannel(out);
+            for (Segment segment : segments) {
+                ByteBuffer head = ByteBuffer.wrap(segment.getHead());
+                while (head.hasRemaining()) target.write(head);
+                copy(channel, segment.getPosition(), segment.getLength(), target);
+            }
+        } finally {
+            Toolkit.close(channel);
+        }
+    }
+
+    /**
+     * 借用池化缓冲区将文件通道指定区间的内容拷贝到目标通道
+     *
+     * @param channel  文件通道
+     * @param position 起始位置
+     * @param length   拷贝长度
+     * @param target   目标通道
+     * @throws IOException I/O 异常
+     */
+    public void copy(FileChannel channel, long position, long length, WritableByteChannel target) throws IOException {
+        ByteBuffer buf = acquire();
+        try {
+            while (length > 0) {
+                buf.clear();
+                if (length < buf.capacity()) buf.limit((int) length);
+                int len = channel.read(buf, position);
+                if (len < 0) break;
+                buf.flip();
+                while (buf.hasRemaining()) target.write(buf);
+                position += len;
+                length -= len;
+            }
+        } finally {
+            recycle(buf);
+        }
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buf = pool.poll();
+        if (buf == null) return ByteBuffer.allocateDirect(buffer);
+        pooled.decrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+    public void recycle(ByteBuffer buf) {
+        if (buf.capacity() != buffer || pooled.incrementAndGet() > capacity) {
+            pooled.decrementAndGet();
+            return;
+        }
+        pool.offer(buf);
+    }
+
+    @Override
+    public void release() {
+        pool.clear();
+        pooled.set(0);
+    }
+
+}
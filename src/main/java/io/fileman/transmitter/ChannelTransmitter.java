@@ -0,0 +1,70 @@
+package io.fileman.transmitter;
+
+import io.fileman.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * 通道传输器，当容器的输出流本身就是可写通道时通过 {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * 直接传输给该通道，否则退化为池化缓冲区拷贝。
+ * <p>
+ * 注意 Tomcat、Jetty、Undertow 等常见容器的 {@link javax.servlet.ServletOutputStream} 都不是可写通道，
+ * 在这些容器中实际走的就是池化缓冲区拷贝，与 buffer 传输器没有区别。
+ * 用 {@link java.nio.channels.Channels#newChannel(OutputStream)} 包装后再 transferTo 也只是在 JDK 内部多拷贝一次，
+ * 因此不做包装。只有当容器提供了基于套接字的可写通道时才能由操作系统完成零拷贝传输。
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/8
+ */
+public class ChannelTransmitter implements Transmitter, Initialable, Releasable {
+    private final BufferTransmitter fallback = new BufferTransmitter();
+
+    @Override
+    public String name() {
+        return "channel";
+    }
+
+    @Override
+    public void initialize(Configuration configuration) throws Exception {
+        fallback.initialize(configuration);
+    }
+
+    @Override
+    public void transmit(FileChannel channel, List<Segment> segments, TransmitContext context) throws IOException {
+        OutputStream out = context.getResponse().getOutputStream();
+        if (!(out instanceof WritableByteChannel)) {
+            fallback.transmit(channel, segments, context);
+            return;
+        }
+        try {
+            WritableByteChannel target = (WritableByteChannel) out;
+            for (Segment segment : segments) {
+                ByteBuffer head = ByteBuffer.wrap(segment.getHead());
+                while (head.hasRemaining()) target.write(head);
+                long position = segment.getPosition();
+                long length = segment.getLength();
+                while (length > 0) {
+                    long len = channel.transferTo(position, length, target);
+                    if (len <= 0) break;
+                    position += len;
+                    length -= len;
+                }
+                // transferTo 在某些平台上可能提前返回 0, 剩余部分用缓冲区补齐
+                if (length > 0) fallback.copy(channel, position, length, target);
+            }
+        } finally {
+            Toolkit.close(channel);
+        }
+    }
+
+    @Override
+    public void release() {
+        fallback.release();
+    }
+
+}
@@ -1,6 +1,7 @@
 function Fileman() {
     var loading = false;
     var xhr;
+    var source;
 
     var fileURI = window.location.hash.substring(1);
     var pageNo = 0;
@@ -52,6 +53,26 @@ function Fileman() {
         this.load(fileURI, _pageNo, pageSize, this.onXHRStateChanged);
     };
 
+    this.follow = function (button) {
+        if (source) {
+            source.close();
+            source = null;
+            button.innerText = 'Follow';
+            return;
+        }
+        if (!window.EventSource) {
+            alert("Your browser does not support EventSource.");
+            return;
+        }
+        var content = document.getElementById("content");
+        source = new EventSource(fileURI + (fileURI.indexOf('?') < 0 ? '?' : '&') + 'follow');
+        source.onmessage = function (event) {
+            content.innerText += event.data + '\n';
+            window.scrollTo(0, document.body.scrollHeight);
+        };
+        button.innerText = 'Unfollow';
+    };
+
     this.onPageSizeChanged = function (input) {
         var _pageSize = parseInt(input.value);
         if (_pageSize >= 0) {
@@ -88,6 +109,7 @@ function Fileman() {
                 }
             }
             html += '<button type="button" class="page" onclick="fileman.next();"' + (pageNo === (pages - 1) ? 'disabled' : '') + '>Next</button>\n';
+            html += '<button type="button" class="page" onclick="fileman.follow(this);">' + (source ? 'Unfollow' : 'Follow') + '</button>\n';
             html += '<input class="page-size" onblur="fileman.onPageSizeChanged(this);" placeholder="lines" value="' + pageSize + '" />\n';
 
             document.getElementById("pagination").innerHTML = html;
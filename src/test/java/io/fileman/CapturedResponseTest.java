@@ -0,0 +1,100 @@
+package io.fileman;
+
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 捕获回应的缓存、直接输出及刷新后一边输出一边捕获
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class CapturedResponseTest {
+
+    @Test
+    public void capturedWithinLimit() throws Exception {
+        Stubs.Response response = new Stubs.Response();
+        CapturedResponse captured = new CapturedResponse(response.build(), 16);
+        ServletOutputStream out = captured.getOutputStream();
+        out.write(bytesOf("head"));
+        // 序列化器的 flush 在捕获期间被忽略
+        out.flush();
+        out.write(bytesOf("tail"));
+        assertArrayEquals(bytesOf("headtail"), captured.finish());
+        assertFalse(captured.isFlushed());
+        assertEquals(0, response.body.size());
+    }
+
+    @Test
+    public void passedOverLimit() throws Exception {
+        Stubs.Response response = new Stubs.Response();
+        CapturedResponse captured = new CapturedResponse(response.build(), 8);
+        ServletOutputStream out = captured.getOutputStream();
+        out.write(bytesOf("head"));
+        out.write(bytesOf("and tail"));
+        assertNull(captured.finish());
+        assertEquals("headand tail", response.body());
+    }
+
+    @Test
+    public void capturedAfterFlushBuffer() throws Exception {
+        Stubs.Response response = new Stubs.Response();
+        CapturedResponse captured = new CapturedResponse(response.build(), 16);
+        ServletOutputStream out = captured.getOutputStream();
+        out.write(bytesOf("head"));
+        captured.flushBuffer();
+        // 刷新时已缓存的内容立即输出，之后的内容一边输出一边捕获
+        assertEquals("head", response.body());
+        assertEquals(1, response.flushes);
+        out.write(bytesOf("tail"));
+        assertEquals("headtail", response.body());
+        assertArrayEquals(bytesOf("headtail"), captured.finish());
+        assertTrue(captured.isFlushed());
+    }
+
+    @Test
+    public void passedOverLimitAfterFlushBuffer() throws Exception {
+        Stubs.Response response = new Stubs.Response();
+        CapturedResponse captured = new CapturedResponse(response.build(), 8);
+        ServletOutputStream out = captured.getOutputStream();
+        out.write(bytesOf("head"));
+        captured.flushBuffer();
+        out.write(bytesOf("and tail"));
+        // 已经输出的内容不会重复输出
+        assertEquals("headand tail", response.body());
+        assertNull(captured.finish());
+    }
+
+    @Test
+    public void passedOnError() throws Exception {
+        Stubs.Response response = new Stubs.Response();
+        CapturedResponse captured = new CapturedResponse(response.build(), 16);
+        captured.getOutputStream().write(bytesOf("head"));
+        captured.sendError(404);
+        assertEquals(404, response.status);
+        assertNull(captured.finish());
+    }
+
+    @Test
+    public void strongEtagOverContent() {
+        Serialized a = new Serialized(bytesOf("listing"), "text/html", 0L);
+        Serialized b = new Serialized(bytesOf("listing"), "text/html", 1000L);
+        Serialized c = new Serialized(bytesOf("changed"), "text/html", 0L);
+        assertTrue(a.getEtag().matches("\"[0-9a-f]{32}\""));
+        assertEquals(a.getEtag(), b.getEtag());
+        assertFalse(a.getEtag().equals(c.getEtag()));
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
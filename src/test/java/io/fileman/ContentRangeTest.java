@@ -0,0 +1,80 @@
+package io.fileman;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Content-Range 请求头解析
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ContentRangeTest {
+
+    @Test
+    public void chunk() {
+        ContentRange range = ContentRange.valueOf(" bytes 100-199/1000 ");
+        assertEquals("bytes", range.getUnit());
+        assertEquals(100L, range.getStart());
+        assertEquals(199L, range.getEnd());
+        assertEquals(1000L, range.getTotal());
+        assertEquals(100L, range.getLength());
+        assertFalse(range.isQuery());
+        assertEquals("bytes 100-199/1000", range.toString());
+    }
+
+    @Test
+    public void lastByte() {
+        ContentRange range = ContentRange.valueOf("bytes 999-999/1000");
+        assertEquals(1L, range.getLength());
+    }
+
+    @Test
+    public void query() {
+        ContentRange range = ContentRange.valueOf("bytes */1000");
+        assertTrue(range.isQuery());
+        assertEquals(0L, range.getLength());
+        assertEquals(1000L, range.getTotal());
+        assertEquals("bytes */1000", range.toString());
+        assertTrue(ContentRange.valueOf("bytes */0").isQuery());
+    }
+
+    @Test
+    public void malformed() {
+        String[] values = {
+                "", "bytes", "bytes 0-9", "0-9/10", "bytes 0-9/", "bytes 9/10", "bytes a-b/10", "bytes 0-9/ten",
+                "bytes */", "bytes */*", "bytes -1-9/10", "bytes 0--1/10", "bytes 0-99999999999999999999/10"
+        };
+        for (String value : values) {
+            try {
+                ContentRange.valueOf(value);
+                fail("accepted malformed content range: " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void outOfBounds() {
+        String[] values = {"bytes 9-0/10", "bytes 0-10/10", "bytes 10-10/10", "bytes 0-0/0", "bytes */-1", "bytes 0-0/-1"};
+        for (String value : values) {
+            try {
+                ContentRange.valueOf(value);
+                fail("accepted out of bounds content range: " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValue() {
+        ContentRange.valueOf(null);
+    }
+
+}
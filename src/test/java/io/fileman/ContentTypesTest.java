@@ -0,0 +1,75 @@
+package io.fileman;
+
+import io.fileman.detector.ExtensionContentTypeDetector;
+import io.fileman.detector.MagicContentTypeDetector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 文件类型探测，只有已经打开文件或开启 sniffing 时才读取文件内容
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ContentTypesTest {
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void extensionWithoutReading() throws Exception {
+        ContentTypes contentTypes = contentTypes(false);
+        File file = folder.newFile("logo.png");
+        // 扩展名已经能判断时不读取内容
+        assertEquals("image/png", contentTypes.contentTypeOf(file));
+    }
+
+    @Test
+    public void magicOnlyWithOpenedChannel() throws Exception {
+        ContentTypes contentTypes = contentTypes(false);
+        File file = write("logo", PNG);
+        assertNull(contentTypes.contentTypeOf(file));
+        // 没有读取内容得到的结果不妨碍打开文件后重新判断
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertEquals("image/png", contentTypes.contentTypeOf(file, null, channel));
+        }
+        assertEquals("image/png", contentTypes.contentTypeOf(file));
+    }
+
+    @Test
+    public void magicWhenSniffing() throws Exception {
+        ContentTypes contentTypes = contentTypes(true);
+        assertEquals("image/png", contentTypes.contentTypeOf(write("logo", PNG)));
+    }
+
+    @Test
+    public void textUndetermined() throws Exception {
+        ContentTypes contentTypes = contentTypes(true);
+        // 没有特征字节的内容交给调用者的缺省类型
+        assertNull(contentTypes.contentTypeOf(write("notes", "plain words".getBytes(StandardCharsets.UTF_8))));
+        assertEquals("application/octet-stream", contentTypes.contentTypeOf(write("blob", new byte[]{1, 0, 2})));
+    }
+
+    private static ContentTypes contentTypes(boolean sniffing) {
+        return new ContentTypes(Arrays.<ContentTypeDetector>asList(new ExtensionContentTypeDetector(), new MagicContentTypeDetector()), 16, sniffing);
+    }
+
+    private File write(String name, byte[] content) throws Exception {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+}
@@ -0,0 +1,127 @@
+package io.fileman;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 传输时顺便计算摘要，只有完整按顺序读过并且没有变化的文件才记录
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class DigestingFileChannelTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] content;
+    private File file;
+    private BasicFileAttributes attributes;
+    private Digests digests;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[10000];
+        new Random(20181018L).nextBytes(content);
+        file = folder.newFile();
+        Files.write(file.toPath(), content);
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(1000L));
+        attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        digests = new Digests(4, null);
+    }
+
+    private DigestingFileChannel open() throws IOException {
+        return new DigestingFileChannel(FileChannel.open(file.toPath(), StandardOpenOption.READ), file, attributes, digests);
+    }
+
+    @Test
+    public void positionalReads() throws IOException {
+        try (DigestingFileChannel channel = open()) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(777);
+            long position = 0;
+            int len;
+            while ((len = channel.read(buf, position)) > 0) {
+                position += len;
+                buf.clear();
+            }
+        }
+        assertArrayEquals(Digests.newDigest().digest(content), digests.digestOf(file, attributes));
+    }
+
+    @Test
+    public void relativeReads() throws IOException {
+        try (DigestingFileChannel channel = open()) {
+            ByteBuffer buf = ByteBuffer.allocate(1000);
+            // 缓冲区中已有的内容不属于文件
+            buf.put((byte) 1);
+            while (channel.read(buf) > 0) buf.clear().position(1);
+        }
+        assertArrayEquals(Digests.newDigest().digest(content), digests.digestOf(file, attributes));
+    }
+
+    @Test
+    public void rereadOverlap() throws IOException {
+        try (DigestingFileChannel channel = open()) {
+            channel.read(ByteBuffer.allocate(6000), 0);
+            // 重复读取已经计算过的部分不影响摘要
+            channel.read(ByteBuffer.allocate(3000), 4000);
+            channel.read(ByteBuffer.allocate(5000), 7000);
+        }
+        assertArrayEquals(Digests.newDigest().digest(content), digests.digestOf(file, attributes));
+    }
+
+    @Test
+    public void transferTo() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DigestingFileChannel channel = open()) {
+            long position = 0;
+            while (position < content.length) position += channel.transferTo(position, content.length - position, Channels.newChannel(out));
+        }
+        assertArrayEquals(content, out.toByteArray());
+        assertArrayEquals(Digests.newDigest().digest(content), digests.digestOf(file, attributes));
+    }
+
+    @Test
+    public void gapAbandons() throws IOException {
+        try (DigestingFileChannel channel = open()) {
+            channel.read(ByteBuffer.allocate(100), 100);
+            channel.read(ByteBuffer.allocate(content.length), 0);
+        }
+        assertNull(digests.digestOf(file, attributes));
+    }
+
+    @Test
+    public void incompleteAbandons() throws IOException {
+        try (DigestingFileChannel channel = open()) {
+            channel.read(ByteBuffer.allocate(content.length - 1), 0);
+        }
+        assertNull(digests.digestOf(file, attributes));
+    }
+
+    @Test
+    public void changedDuringTransferAbandons() throws IOException {
+        try (DigestingFileChannel channel = open()) {
+            channel.read(ByteBuffer.allocate(content.length), 0);
+            Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(2000L));
+        }
+        assertNull(digests.digestOf(file, attributes));
+        assertNull(digests.digestOf(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class)));
+    }
+
+}
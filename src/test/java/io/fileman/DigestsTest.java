@@ -0,0 +1,151 @@
+package io.fileman;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Digest 及 Want-Digest 头的解析、摘要的记录及持久化
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class DigestsTest {
+    private static final String EMPTY = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parse() {
+        assertNull(Digests.parse(null));
+        assertNull(Digests.parse(""));
+        assertNull(Digests.parse("MD5=1B2M2Y8AsgTpgAmY7PhCfg=="));
+        assertNull(Digests.parse("SHA-256"));
+        assertArrayEquals(Base64.decodeBase64(EMPTY), Digests.parse("SHA-256=" + EMPTY));
+        assertArrayEquals(Base64.decodeBase64(EMPTY), Digests.parse("sha-256 = " + EMPTY));
+        assertArrayEquals(Base64.decodeBase64(EMPTY), Digests.parse("MD5=1B2M2Y8AsgTpgAmY7PhCfg==, SHA-256=" + EMPTY));
+        assertEquals("SHA-256=" + EMPTY, Digests.headerOf(Digests.parse("SHA-256=" + EMPTY)));
+    }
+
+    @Test
+    public void malformed() {
+        String[] values = {"SHA-256=", "SHA-256=!!!!", "SHA-256=1B2M2Y8AsgTpgAmY7PhCfg==", "SHA-256=" + EMPTY + EMPTY};
+        for (String value : values) {
+            try {
+                Digests.parse(value);
+                fail("accepted malformed digest: " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void wants() {
+        assertFalse(Digests.wants(null));
+        assertFalse(Digests.wants(""));
+        assertFalse(Digests.wants("MD5"));
+        assertTrue(Digests.wants("SHA-256"));
+        assertTrue(Digests.wants("sha-256"));
+        assertTrue(Digests.wants("MD5;q=1, SHA-256;q=0.3"));
+        assertTrue(Digests.wants("SHA-256;q=1"));
+        assertFalse(Digests.wants("SHA-256;q=0"));
+        assertFalse(Digests.wants("SHA-256;Q=0.000"));
+        assertFalse(Digests.wants("MD5, SHA-256;q=0."));
+    }
+
+    @Test
+    public void recordsFollowTheFileVersion() throws IOException {
+        File file = write("hello", 1000L);
+        Digests digests = new Digests(4, null);
+        byte[] digest = digests.hash(file);
+        assertArrayEquals(sha256("hello"), digest);
+        assertNull(digests.digestOf(file, attributesOf(file)));
+        digests.put(file, digest);
+        assertArrayEquals(digest, digests.digestOf(file, attributesOf(file)));
+        // 内容变化或者只是修改时间变化都视为新版本
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(2000L));
+        assertNull(digests.digestOf(file, attributesOf(file)));
+        Files.write(file.toPath(), "hello!".getBytes("UTF-8"));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(1000L));
+        assertNull(digests.digestOf(file, attributesOf(file)));
+    }
+
+    @Test
+    public void persistedAcrossInstances() throws IOException {
+        File file = write("hello", 1000L);
+        File directory = new File(folder.getRoot(), "digests");
+        new Digests(4, directory).put(file, sha256("hello"));
+        assertArrayEquals(sha256("hello"), new Digests(4, directory).digestOf(file, attributesOf(file)));
+        assertNull(new Digests(4, null).digestOf(file, attributesOf(file)));
+        String[] names = directory.list();
+        assertEquals(1, names.length);
+        assertTrue(names[0], names[0].endsWith(".sha256"));
+    }
+
+    @Test
+    public void evictedWithoutStore() throws IOException {
+        File a = write("a", 1000L);
+        File b = write("b", 1000L);
+        Digests digests = new Digests(1, null);
+        digests.put(a, sha256("a"));
+        digests.put(b, sha256("b"));
+        assertNull(digests.digestOf(a, attributesOf(a)));
+        assertArrayEquals(sha256("b"), digests.digestOf(b, attributesOf(b)));
+    }
+
+    @Test
+    public void hashingStopsWhenFullWithoutStore() throws IOException {
+        File a = write("a", 1000L);
+        Digests digests = new Digests(1, null, 1, 0L);
+        try {
+            assertTrue(digests.isHashing());
+            digests.put(a, sha256("a"));
+            // 内存已满又没有持久化，继续计算只会互相挤掉
+            assertFalse(digests.isHashing());
+        } finally {
+            digests.release();
+        }
+        Digests stored = new Digests(1, new File(folder.getRoot(), "digests"), 1, 0L);
+        try {
+            stored.put(a, sha256("a"));
+            assertTrue(stored.isHashing());
+        } finally {
+            stored.release();
+        }
+        assertFalse(new Digests(1, null).isHashing());
+    }
+
+    private File write(String content, long modified) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(modified));
+        return file;
+    }
+
+    private static BasicFileAttributes attributesOf(File file) throws IOException {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    }
+
+    private static byte[] sha256(String content) throws IOException {
+        MessageDigest md = Digests.newDigest();
+        return md.digest(content.getBytes("UTF-8"));
+    }
+
+}
@@ -0,0 +1,133 @@
+package io.fileman;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 已接收区间的合并及查询
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ExtentsTest {
+
+    @Test
+    public void sequential() {
+        Extents extents = new Extents();
+        assertTrue(extents.isEmpty());
+        extents.add(0, 10);
+        extents.add(10, 20);
+        extents.add(20, 25);
+        assertEquals("0-24", extents.toString());
+        assertEquals(25L, extents.size());
+        assertTrue(extents.covers(25));
+        assertFalse(extents.covers(26));
+    }
+
+    @Test
+    public void outOfOrder() {
+        Extents extents = new Extents();
+        extents.add(20, 30);
+        extents.add(0, 10);
+        assertEquals("0-9,20-29", extents.toString());
+        assertFalse(extents.covers(30));
+        extents.add(10, 20);
+        assertEquals("0-29", extents.toString());
+        assertTrue(extents.covers(30));
+    }
+
+    @Test
+    public void overlapping() {
+        Extents extents = new Extents();
+        extents.add(10, 20);
+        extents.add(15, 30);
+        assertEquals("10-29", extents.toString());
+        extents.add(5, 12);
+        assertEquals("5-29", extents.toString());
+        // 被已有区间包含
+        extents.add(12, 18);
+        assertEquals("5-29", extents.toString());
+        assertEquals(25L, extents.size());
+    }
+
+    @Test
+    public void bridging() {
+        Extents extents = new Extents();
+        extents.add(0, 5);
+        extents.add(10, 15);
+        extents.add(20, 25);
+        extents.add(30, 35);
+        extents.add(3, 31);
+        assertEquals("0-34", extents.toString());
+        assertEquals(35L, extents.size());
+    }
+
+    @Test
+    public void emptyIgnored() {
+        Extents extents = new Extents();
+        extents.add(5, 5);
+        assertTrue(extents.isEmpty());
+        assertTrue(extents.covers(0));
+        assertFalse(extents.covers(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeStart() {
+        new Extents().add(-1, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reversed() {
+        new Extents().add(5, 4);
+    }
+
+    @Test
+    public void endOf() {
+        Extents extents = new Extents();
+        extents.add(10, 20);
+        extents.add(30, 40);
+        assertEquals(0L, extents.endOf(0));
+        assertEquals(20L, extents.endOf(10));
+        assertEquals(20L, extents.endOf(19));
+        assertEquals(20L, extents.endOf(20));
+        assertEquals(25L, extents.endOf(25));
+        assertEquals(40L, extents.endOf(35));
+    }
+
+    @Test
+    public void randomAgainstBitmap() {
+        Random random = new Random(20181018L);
+        for (int round = 0; round < 200; round++) {
+            int length = 1 + random.nextInt(64);
+            boolean[] received = new boolean[length];
+            Extents extents = new Extents();
+            int chunks = 1 + random.nextInt(8);
+            for (int i = 0; i < chunks; i++) {
+                int start = random.nextInt(length);
+                int end = start + random.nextInt(length - start + 1);
+                extents.add(start, end);
+                for (int j = start; j < end; j++) received[j] = true;
+            }
+            StringBuilder expected = new StringBuilder();
+            long size = 0;
+            for (int j = 0; j < length; j++) {
+                if (!received[j]) continue;
+                size++;
+                if (j > 0 && received[j - 1]) continue;
+                int k = j;
+                while (k + 1 < length && received[k + 1]) k++;
+                if (expected.length() > 0) expected.append(',');
+                expected.append(j).append('-').append(k);
+            }
+            assertEquals(expected.toString(), extents.toString());
+            assertEquals(size, extents.size());
+            assertEquals(size == length, extents.covers(length));
+        }
+    }
+
+}
@@ -0,0 +1,414 @@
+package io.fileman;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.fileman.formatter.HtmlFormatter;
+import io.fileman.formatter.JsonFormatter;
+import io.fileman.formatter.XmlFormatter;
+import io.fileman.formatter.YamlFormatter;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 通过请求及回应桩驱动的目录列表及上传
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class FilemanWebSupportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FilemanWebSupport support;
+
+    @After
+    public void tearDown() {
+        if (support != null) support.destroy();
+    }
+
+    @Test
+    public void listingAnsweredWithEtag() throws Exception {
+        init(new HashMap<String, String>());
+        write("logs/app.log", "app");
+        Stubs.Response first = get(new Stubs.Request("GET", "/fileman/logs/"));
+        assertEquals(200, first.status);
+        String etag = first.headers.get("ETag");
+        assertNotNull(etag);
+        assertNotNull(first.headers.get("Last-Modified"));
+        // 命中缓存时同样带上 ETag 并一次写出
+        Stubs.Response second = get(new Stubs.Request("GET", "/fileman/logs/"));
+        assertEquals(etag, second.headers.get("ETag"));
+        assertEquals(first.body(), second.body());
+    }
+
+    @Test
+    public void ifNoneMatch() throws Exception {
+        init(new HashMap<String, String>());
+        write("logs/app.log", "app");
+        String etag = get(new Stubs.Request("GET", "/fileman/logs/")).headers.get("ETag");
+        String[] matches = {etag, "W/" + etag, "\"other\", " + etag, "*"};
+        for (String match : matches) {
+            Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/").header("If-None-Match", match));
+            assertEquals(match, 304, response.status);
+            assertEquals(match, 0, response.body.size());
+        }
+        Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/").header("If-None-Match", "\"other\""));
+        assertEquals(200, response.status);
+        assertEquals(etag, response.headers.get("ETag"));
+    }
+
+    @Test
+    public void ifModifiedSince() throws Exception {
+        init(new HashMap<String, String>());
+        write("logs/app.log", "app");
+        long modified = Long.valueOf(get(new Stubs.Request("GET", "/fileman/logs/")).headers.get("Last-Modified"));
+        Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/").header("If-Modified-Since", String.valueOf(modified)));
+        assertEquals(304, response.status);
+        response = get(new Stubs.Request("GET", "/fileman/logs/").header("If-Modified-Since", String.valueOf(modified - 1000L)));
+        assertEquals(200, response.status);
+        // 同时带有 If-None-Match 时以 If-None-Match 为准
+        response = get(new Stubs.Request("GET", "/fileman/logs/").header("If-Modified-Since", String.valueOf(modified)).header("If-None-Match", "\"other\""));
+        assertEquals(200, response.status);
+    }
+
+    @Test
+    public void earlyFlushedListingCached() throws Exception {
+        init(new HashMap<String, String>());
+        for (int i = 0; i < 33; i++) write("logs/app-" + i + ".log", "app");
+        write("logs/a<b>.log", "app");
+        Stubs.Response first = get(new Stubs.Request("GET", "/fileman/logs/"));
+        // 前面的行提前刷新给客户端，回应已经提交，不再带 ETag
+        assertEquals(200, first.status);
+        assertEquals(1, first.flushes);
+        assertNull(first.headers.get("ETag"));
+        assertTrue(first.body().contains("a&lt;b&gt;.log"));
+        assertFalse(first.body().contains("a<b>.log"));
+        // 一边输出一边捕获的内容被缓存，之后的请求带上 ETag 并支持 304
+        Stubs.Response second = get(new Stubs.Request("GET", "/fileman/logs/"));
+        String etag = second.headers.get("ETag");
+        assertNotNull(etag);
+        assertEquals(first.body(), second.body());
+        Stubs.Response third = get(new Stubs.Request("GET", "/fileman/logs/").header("If-None-Match", etag));
+        assertEquals(304, third.status);
+        assertEquals(0, third.body.size());
+    }
+
+    @Test
+    public void listingNotCapturedWithoutEntryLimit() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("listing-cache-entry-bytes", "0");
+        init(values);
+        write("logs/app.log", "app");
+        Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/"));
+        assertEquals(200, response.status);
+        assertNull(response.headers.get("ETag"));
+    }
+
+    @Test
+    public void streamedListings() throws Exception {
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            names.add("app-" + i + ".log");
+            write("logs/app-" + i + ".log", "app " + i);
+        }
+        String[] formatters = {HtmlFormatter.class.getName(), JsonFormatter.class.getName(), XmlFormatter.class.getName(), YamlFormatter.class.getName()};
+        // 捕获上限足够及不够时都要完整地输出所有子文件，不够时也不能缓存残缺的目录
+        String[] limits = {"" + 1024 * 1024, "1024"};
+        for (String formatter : formatters) {
+            for (String limit : limits) {
+                Map<String, String> values = new HashMap<>();
+                values.put("formatter", formatter);
+                values.put("listing-cache-entry-bytes", limit);
+                init(values);
+                for (int i = 0; i < 2; i++) {
+                    Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/"));
+                    assertEquals(formatter, 200, response.status);
+                    String body = response.body();
+                    if (formatter.equals(JsonFormatter.class.getName())) assertEquals(names, namesOf(new ObjectMapper().readTree(body)));
+                    else if (formatter.equals(YamlFormatter.class.getName())) assertEquals(names, namesOf(new YAMLMapper().readTree(body)));
+                    else for (String name : names) assertTrue(formatter + " " + name, body.contains(name));
+                }
+                support.destroy();
+                support = null;
+            }
+        }
+    }
+
+    @Test
+    public void parallelSynthesis() throws Exception {
+        for (int i = 0; i < 200; i++) write("logs/app-" + i + ".log", "app " + i);
+        String[] threads = {"0", "4"};
+        String[] bodies = new String[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            Map<String, String> values = new HashMap<>();
+            values.put("fields", "name,size,time,type,etag,view," + ThreadAdapter.class.getName() + "," + ThreadSafeAdapter.class.getName());
+            values.put("synthesize-threads", threads[i]);
+            values.put("synthesize-parallelism", "2");
+            values.put("listing-cache-size", "0");
+            init(values);
+            ThreadAdapter.THREADS.clear();
+            ThreadSafeAdapter.THREADS.clear();
+            Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/"));
+            assertEquals(200, response.status);
+            bodies[i] = response.body();
+            // 非线程安全的转换器只在请求线程中执行
+            assertEquals(Collections.singleton(Thread.currentThread().getName()), ThreadAdapter.THREADS);
+            boolean pooled = false;
+            for (String thread : ThreadSafeAdapter.THREADS) pooled |= thread.startsWith("fileman-synthesize-");
+            assertEquals(!threads[i].equals("0"), pooled);
+            support.destroy();
+            support = null;
+        }
+        // 并行合成的输出与串行合成完全一致
+        assertEquals(bodies[0], bodies[1]);
+    }
+
+    @Test
+    public void multipartPutReplacesTarget() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("upload-buffer", "8");
+        init(values);
+        File file = write("logs/app.log", "old");
+        // 不超过 upload-buffer 的部分直接复制，超过的通过 Part.write 写到临时文件
+        String[] contents = {"small", "larger than the upload buffer"};
+        for (String content : contents) {
+            Stubs.Response response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").part("app.log", content.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(content, 200, response.status);
+            assertEquals(content, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        assertArrayEquals(new String[]{"app.log"}, file.getParentFile().list());
+    }
+
+    @Test
+    public void brokenMultipartPutKeepsTarget() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("upload-buffer", "8");
+        init(values);
+        File file = write("logs/app.log", "old");
+        for (String content : new String[]{"small", "larger than the upload buffer"}) {
+            Stubs.Request request = new Stubs.Request("PUT", "/fileman/logs/app.log");
+            request.parts.add(Stubs.part("app.log", content.getBytes(StandardCharsets.UTF_8), null, true));
+            try {
+                get(request);
+                fail(content);
+            } catch (IOException e) {
+                assertEquals("connection reset", e.getMessage());
+            }
+            // 上传中断时目标文件保持原样，也不留下临时文件
+            assertEquals("old", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            assertArrayEquals(new String[]{"app.log"}, file.getParentFile().list());
+        }
+    }
+
+    @Test
+    public void multipartPutDigest() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("upload-buffer", "8");
+        init(values);
+        File file = write("logs/app.log", "old");
+        for (String content : new String[]{"small", "larger than the upload buffer"}) {
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            String digest = Digests.headerOf(DigestUtils.sha256(bytes));
+            // 回应带上文件内容的摘要
+            Stubs.Response response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").part("app.log", bytes));
+            assertEquals(content, 200, response.status);
+            assertEquals(content, digest, response.headers.get("Digest"));
+            // 请求或这一部分声明的摘要一致时接收
+            response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Digest", digest).part("app.log", bytes));
+            assertEquals(content, digest, response.headers.get("Digest"));
+            Stubs.Request request = new Stubs.Request("PUT", "/fileman/logs/app.log");
+            request.parts.add(Stubs.part("app.log", bytes, digest));
+            assertEquals(content, digest, get(request).headers.get("Digest"));
+        }
+        // 摘要不一致时拒绝并保持原文件
+        String mismatch = Digests.headerOf(DigestUtils.sha256("other"));
+        for (String content : new String[]{"small", "larger than the upload buffer"}) {
+            Stubs.Response response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Digest", mismatch).part("app.log", content.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(content, 400, response.status);
+            assertNull(content, response.headers.get("Digest"));
+            assertEquals("larger than the upload buffer", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            assertArrayEquals(new String[]{"app.log"}, file.getParentFile().list());
+        }
+    }
+
+    @Test
+    public void chunkedPut() throws Exception {
+        init(new HashMap<String, String>());
+        File file = new File(folder.getRoot(), "logs/app.log");
+        Stubs.Response response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Content-Range", "bytes 5-9/10").body("56789".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(202, response.status);
+        assertEquals("bytes=5-9", response.headers.get("Range"));
+        // 查询进度以便续传缺少的区间
+        response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Content-Range", "bytes */10"));
+        assertEquals(202, response.status);
+        assertEquals("bytes=5-9", response.headers.get("Range"));
+        response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Content-Range", "bytes 0-4/10").body("01234".getBytes(StandardCharsets.UTF_8)));
+        String digest = Digests.headerOf(DigestUtils.sha256("0123456789"));
+        assertEquals(200, response.status);
+        assertEquals(digest, response.headers.get("Digest"));
+        assertEquals("0123456789", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        // 提交之后重试的分块及进度查询都回应已完成
+        response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Content-Range", "bytes 0-4/10").body("01234".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(200, response.status);
+        assertEquals(digest, response.headers.get("Digest"));
+        response = get(new Stubs.Request("PUT", "/fileman/logs/app.log").header("Content-Range", "bytes */10"));
+        assertEquals(200, response.status);
+        assertEquals(digest, response.headers.get("Digest"));
+        assertArrayEquals(new String[]{"app.log"}, file.getParentFile().list());
+    }
+
+    @Test
+    public void parallelPost() throws Exception {
+        Map<String, String> values = new HashMap<>();
+        values.put("upload-buffer", "8");
+        values.put("upload-threads", "4");
+        values.put("upload-parallelism", "2");
+        init(values);
+        Stubs.Request request = new Stubs.Request("POST", "/fileman/uploads/");
+        for (int i = 0; i < 40; i++) {
+            String name = String.format("file-%02d.log", i);
+            // 一半直接复制，一半通过 Part.write 写到临时文件
+            String content = i % 2 == 0 ? "f" + i : "larger than the upload buffer " + i;
+            String digest = i == 7 ? Digests.headerOf(DigestUtils.sha256("other")) : null;
+            request.parts.add(Stubs.part(name, content.getBytes(StandardCharsets.UTF_8), digest));
+        }
+        Stubs.Response response = get(request);
+        assertEquals(200, response.status);
+        String body = response.body();
+        File directory = new File(folder.getRoot(), "uploads");
+        int from = 0;
+        for (int i = 0; i < 40; i++) {
+            String name = String.format("file-%02d.log", i);
+            File file = new File(directory, name);
+            // 结果按上传的顺序输出
+            int index = body.indexOf(name, from);
+            assertTrue(name, index >= from);
+            from = index;
+            if (i == 7) {
+                assertFalse(file.exists());
+                continue;
+            }
+            String content = i % 2 == 0 ? "f" + i : "larger than the upload buffer " + i;
+            assertEquals(content, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        assertTrue(body, body.contains("digest mismatch"));
+        assertEquals(39, directory.list().length);
+    }
+
+    @Test
+    public void strongEtagOptIn() throws Exception {
+        init(new HashMap<String, String>());
+        write("logs/app.log", "app");
+        Stubs.Response response = get(new Stubs.Request("GET", "/fileman/logs/").parameter("fields", "strong-etag"));
+        assertEquals(400, response.status);
+        support.destroy();
+        // 以类名显式开启后可以选择这一列，上传过的文件带有基于内容摘要的强 ETag
+        Map<String, String> values = new HashMap<>();
+        values.put("fields", "name,io.fileman.adapter.DigestETagAdapter");
+        init(values);
+        get(new Stubs.Request("PUT", "/fileman/logs/app.log").body("app".getBytes(StandardCharsets.UTF_8)));
+        response = get(new Stubs.Request("GET", "/fileman/logs/").parameter("fields", "strong-etag"));
+        assertEquals(200, response.status);
+        assertTrue(response.body(), response.body().contains(Base64.encodeBase64URLSafeString(DigestUtils.sha256("app"))));
+    }
+
+    private static Set<String> namesOf(JsonNode listing) {
+        Set<String> names = new HashSet<>();
+        JsonNode children = listing.get("children");
+        for (int i = 0; i < children.size(); i++) {
+            String path = children.get(i).get("path").asText();
+            // 每个子文件只输出一次
+            assertTrue(path, names.add(path.substring(path.lastIndexOf('/') + 1)));
+        }
+        return names;
+    }
+
+    private void init(Map<String, String> values) throws Exception {
+        values.put("root", folder.getRoot().getPath());
+        support = new FilemanWebSupport();
+        support.init(Stubs.configuration(values));
+    }
+
+    private Stubs.Response get(Stubs.Request request) throws Exception {
+        Stubs.Response response = new Stubs.Response();
+        support.handle(request.build(), response.build());
+        return response;
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * 记录执行线程的非线程安全转换器
+     */
+    public static class ThreadAdapter extends Adapter {
+        static final Set<String> THREADS = Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public String column() {
+            return "Thread";
+        }
+
+        @Override
+        public String key() {
+            return "thread";
+        }
+
+        @Override
+        public Object resolve(File file, ResolveContext context) {
+            THREADS.add(Thread.currentThread().getName());
+            return file.getName().length();
+        }
+    }
+
+    /**
+     * 记录执行线程的线程安全转换器
+     */
+    public static class ThreadSafeAdapter extends Adapter implements ThreadSafe {
+        static final Set<String> THREADS = Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public String column() {
+            return "Pooled";
+        }
+
+        @Override
+        public String key() {
+            return "pooled";
+        }
+
+        @Override
+        public Object resolve(File file, ResolveContext context) {
+            THREADS.add(Thread.currentThread().getName());
+            return file.getName().length();
+        }
+    }
+
+}
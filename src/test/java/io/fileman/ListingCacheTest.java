@@ -0,0 +1,158 @@
+package io.fileman;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 目录列表缓存的命中、失效及容量限制
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class ListingCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ListingCache cache;
+
+    @After
+    public void tearDown() {
+        if (cache != null) cache.release();
+    }
+
+    @Test
+    public void hitPerVariant() throws IOException {
+        cache = new ListingCache(16, 1024 * 1024, 1024 * 1024);
+        File directory = folder.newFolder("logs");
+        Fileman fileman = filemanOf(directory);
+        assertTrue(cache.put(cache.stamp(directory), "html", fileman, ListingCache.sizeOf(fileman)));
+        assertSame(fileman, cache.get(cache.stamp(directory), "html").getFileman());
+        assertNull(cache.get(cache.stamp(directory), "json"));
+        assertEquals(1L, cache.getHits());
+        assertEquals(1L, cache.getMisses());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void watchedDirectoryInvalidated() throws Exception {
+        cache = new ListingCache(16, 1024 * 1024, 1024 * 1024);
+        File directory = folder.newFolder("logs");
+        Fileman fileman = filemanOf(directory);
+        assertTrue(cache.put(cache.stamp(directory), "html", fileman, ListingCache.sizeOf(fileman)));
+        Files.write(new File(directory, "app.log").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        // 监听到的变化是异步到达的
+        long deadline = System.currentTimeMillis() + 10 * 1000L;
+        while (cache.get(cache.stamp(directory), "html") != null) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void writeInvalidatesAncestorsAndDescendants() throws IOException {
+        cache = new ListingCache(16, 1024 * 1024, 1024 * 1024, false, 60 * 1000L);
+        File a = folder.newFolder("a");
+        File b = folder.newFolder("a", "b");
+        File c = folder.newFolder("a", "b", "c");
+        File sibling = folder.newFolder("sibling");
+        for (File directory : new File[]{a, b, c, sibling}) {
+            Fileman fileman = filemanOf(directory);
+            assertTrue(cache.put(cache.stamp(directory), "html", fileman, ListingCache.sizeOf(fileman)));
+        }
+        cache.invalidate(b);
+        assertNull(cache.get(cache.stamp(a), "html"));
+        assertNull(cache.get(cache.stamp(b), "html"));
+        assertNull(cache.get(cache.stamp(c), "html"));
+        assertNotNull(cache.get(cache.stamp(sibling), "html"));
+    }
+
+    @Test
+    public void invalidatedWhileSynthesizing() throws IOException {
+        cache = new ListingCache(16, 1024 * 1024, 1024 * 1024, false, 60 * 1000L);
+        File directory = folder.newFolder("logs");
+        ListingCache.Stamp stamp = cache.stamp(directory);
+        cache.invalidate(new File(directory, "app.log"));
+        Fileman fileman = filemanOf(directory);
+        assertFalse(cache.put(stamp, "html", fileman, ListingCache.sizeOf(fileman)));
+        assertNull(cache.get(cache.stamp(directory), "html"));
+    }
+
+    @Test
+    public void unwatchedComparesDirectoryItself() throws Exception {
+        cache = new ListingCache(16, 1024 * 1024, 1024 * 1024, false, 60 * 1000L);
+        File directory = folder.newFolder("logs");
+        File child = new File(directory, "app.log");
+        Files.write(child.toPath(), "a".getBytes(StandardCharsets.UTF_8));
+        Fileman fileman = filemanOf(directory);
+        assertTrue(cache.put(cache.stamp(directory), "html", fileman, ListingCache.sizeOf(fileman)));
+        // 子文件内容变化不影响目录本身，命中时不逐个检查子文件
+        Files.write(child.toPath(), "ab".getBytes(StandardCharsets.UTF_8));
+        assertNotNull(cache.get(cache.stamp(directory), "html"));
+        // 增加子文件改变目录的最后修改时间
+        Thread.sleep(20);
+        Files.write(new File(directory, "new.log").toPath(), new byte[0]);
+        assertNull(cache.get(cache.stamp(directory), "html"));
+    }
+
+    @Test
+    public void unwatchedRevalidated() throws Exception {
+        cache = new ListingCache(16, 1024 * 1024, 1024 * 1024, false, 100L);
+        File directory = folder.newFolder("logs");
+        Fileman fileman = filemanOf(directory);
+        assertTrue(cache.put(cache.stamp(directory), "html", fileman, ListingCache.sizeOf(fileman)));
+        assertNotNull(cache.get(cache.stamp(directory), "html"));
+        Thread.sleep(150);
+        assertNull(cache.get(cache.stamp(directory), "html"));
+    }
+
+    @Test
+    public void limits() throws IOException {
+        File a = folder.newFolder("a");
+        File b = folder.newFolder("b");
+        File c = folder.newFolder("c");
+        Fileman fileman = filemanOf(a);
+        long size = ListingCache.sizeOf(fileman);
+        // 超出单个缓存项上限的不缓存
+        cache = new ListingCache(16, 1024 * 1024, size - 1, false, 60 * 1000L);
+        assertFalse(cache.put(cache.stamp(a), "html", fileman, size));
+        cache.release();
+        // 按最近最少使用淘汰
+        cache = new ListingCache(2, 1024 * 1024, 1024 * 1024, false, 60 * 1000L);
+        assertTrue(cache.put(cache.stamp(a), "html", filemanOf(a), size));
+        assertTrue(cache.put(cache.stamp(b), "html", filemanOf(b), size));
+        assertNotNull(cache.get(cache.stamp(a), "html"));
+        assertTrue(cache.put(cache.stamp(c), "html", filemanOf(c), size));
+        assertNotNull(cache.get(cache.stamp(a), "html"));
+        assertNull(cache.get(cache.stamp(b), "html"));
+        assertEquals(2, cache.getSize());
+        // 容量为 0 时不缓存
+        cache.release();
+        cache = new ListingCache(0, 1024 * 1024, 1024 * 1024);
+        assertFalse(cache.put(cache.stamp(a), "html", filemanOf(a), size));
+    }
+
+    private static Fileman filemanOf(File directory) {
+        Fileman fileman = new Fileman();
+        fileman.setUri("/fileman/" + directory.getName());
+        fileman.setPath("/" + directory.getName());
+        fileman.setFolder(true);
+        fileman.setChildren(Collections.<Fileman>emptyList());
+        return fileman;
+    }
+
+}
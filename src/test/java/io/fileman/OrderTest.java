@@ -0,0 +1,153 @@
+package io.fileman;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 目录列表排序方式及分页游标
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class OrderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parse() {
+        assertEquals(Order.DEFAULT, Order.valueOf(null));
+        assertEquals(Order.DEFAULT, Order.valueOf(" "));
+        assertEquals(Order.DEFAULT, Order.valueOf("name,asc"));
+        assertEquals("size,desc", Order.valueOf("size,desc").toString());
+        assertEquals("time", Order.valueOf(" TIME , ASC ").toString());
+        String[] values = {"owner", "name,up", "name,desc,asc", ",desc"};
+        for (String value : values) {
+            try {
+                Order.valueOf(value);
+                fail("accepted illegal sort: " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void tiesBrokenByName() {
+        List<Listing.Entry> entries = new ArrayList<>(Arrays.asList(
+                new Listing.Entry("c", 10L, 3L),
+                new Listing.Entry("a", 10L, 1L),
+                new Listing.Entry("b", 5L, 2L)
+        ));
+        Collections.sort(entries, Order.valueOf("size"));
+        assertEquals("b,a,c", namesOf(entries));
+        Collections.sort(entries, Order.valueOf("size,desc"));
+        assertEquals("c,a,b", namesOf(entries));
+        Collections.sort(entries, Order.valueOf("time,desc"));
+        assertEquals("c,b,a", namesOf(entries));
+    }
+
+    @Test
+    public void cursorRoundTrip() {
+        Order order = Order.valueOf("time,desc");
+        // 名称中可以有换行等任意字符
+        Listing.Entry entry = new Listing.Entry("报表\n2018.log", 99L, 1539820800000L);
+        String cursor = order.cursorOf(entry);
+        assertTrue(cursor, cursor.matches("[A-Za-z0-9_-]+"));
+        Listing.Entry decoded = order.entryOf(cursor);
+        assertEquals(entry.getName(), decoded.getName());
+        assertEquals(entry.getTime(), decoded.getTime());
+        assertEquals(0, order.compare(entry, decoded));
+    }
+
+    @Test
+    public void cursorOfAnotherOrderRejected() {
+        String cursor = Order.valueOf("size").cursorOf(new Listing.Entry("a", 1L, 2L));
+        rejected(Order.valueOf("size,desc"), cursor);
+        rejected(Order.valueOf("time"), cursor);
+        rejected(Order.DEFAULT, cursor);
+    }
+
+    @Test
+    public void tamperedCursorRejected() {
+        Order order = Order.valueOf("size");
+        rejected(order, "");
+        rejected(order, "!!!");
+        rejected(order, "not a cursor");
+        rejected(order, encode("size\n12"));
+        rejected(order, encode("size\ntwelve\na"));
+        rejected(order, encode("size\n99999999999999999999\na"));
+        rejected(order, encode("size,asc\n12\na"));
+    }
+
+    @Test
+    public void pagesAcrossChanges() throws IOException {
+        File directory = folder.newFolder("logs");
+        for (int i = 0; i < 6; i++) create(directory, "f" + i, i);
+        Order order = Order.valueOf("time");
+        Listing listing = Listing.of(directory.toPath(), order);
+        assertEquals(0, listing.indexAfter(null));
+        String cursor = order.cursorOf(listing.getEntries().get(2));
+        assertEquals(3, listing.indexAfter(cursor));
+
+        // 游标所指的子文件被删除、前面插入了新文件后，下一页仍然从 f3 开始
+        assertTrue(new File(directory, "f2").delete());
+        create(directory, "e", 0);
+        Listing changed = Listing.of(directory.toPath(), order);
+        assertEquals("f3", changed.getEntries().get(changed.indexAfter(cursor)).getName());
+
+        // 游标格式正确但内容被篡改时只是换了位置，不会越界
+        assertEquals(0, changed.indexAfter(order.cursorOf(new Listing.Entry("", Long.MIN_VALUE, Long.MIN_VALUE))));
+        assertEquals(changed.size(), changed.indexAfter(order.cursorOf(new Listing.Entry("~", Long.MAX_VALUE, Long.MAX_VALUE))));
+        try {
+            changed.indexAfter(Order.DEFAULT.cursorOf(changed.getEntries().get(0)));
+            fail("accepted cursor of another order");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void create(File directory, String name, int minutes) throws IOException {
+        File file = new File(directory, name);
+        assertTrue(file.createNewFile());
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(1539820800000L + minutes * 60000L));
+    }
+
+    private static void rejected(Order order, String cursor) {
+        try {
+            order.entryOf(cursor);
+            fail("accepted cursor: " + cursor);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.encodeBase64URLSafeString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String namesOf(List<Listing.Entry> entries) {
+        StringBuilder builder = new StringBuilder();
+        for (Listing.Entry entry : entries) {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(entry.getName());
+        }
+        return builder.toString();
+    }
+
+}
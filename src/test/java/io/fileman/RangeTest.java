@@ -0,0 +1,77 @@
+package io.fileman;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Range 请求头解析
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class RangeTest {
+
+    @Test
+    public void single() {
+        Range range = Range.valueOf("bytes=0-99");
+        assertEquals("bytes", range.getUnit());
+        assertEquals(0L, range.getStart());
+        assertEquals(99L, range.getEnd());
+        assertEquals("bytes=0-99", range.toString());
+    }
+
+    @Test
+    public void openEnded() {
+        Range range = Range.valueOf("bytes=100-");
+        assertEquals(100L, range.getStart());
+        assertEquals(Long.MAX_VALUE, range.getEnd());
+        assertEquals("bytes=100-", range.toString());
+    }
+
+    @Test
+    public void suffix() {
+        Range range = Range.valueOf("lines=-20");
+        assertEquals("lines", range.getUnit());
+        assertEquals(-1L, range.getStart());
+        assertEquals(20L, range.getEnd());
+        assertEquals("lines=-20", range.toString());
+    }
+
+    @Test
+    public void multiple() {
+        List<Range.Section> sections = Range.valueOf("bytes= 0-9 , 20-29,-5").getSections();
+        assertEquals(3, sections.size());
+        assertEquals("0-9", sections.get(0).toString());
+        assertEquals("20-29", sections.get(1).toString());
+        assertEquals("-5", sections.get(2).toString());
+    }
+
+    @Test
+    public void emptySectionsSkipped() {
+        Range range = Range.valueOf("bytes=0-9,,");
+        assertEquals(1, range.getSections().size());
+    }
+
+    @Test
+    public void malformed() {
+        String[] values = {"bytes", "bytes=", "bytes=,", "bytes=10", "bytes=-", "bytes=a-b", "bytes=1-2,x"};
+        for (String value : values) {
+            try {
+                Range.valueOf(value);
+                fail("accepted malformed range: " + value);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValue() {
+        Range.valueOf(null);
+    }
+
+}
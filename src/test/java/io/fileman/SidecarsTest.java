@@ -0,0 +1,75 @@
+package io.fileman;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 旁路文件的读写、文件头校验及不持久化时的行为
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class SidecarsTest {
+    private static final Sidecars.Decoder<String> DECODER = new Sidecars.Decoder<String>() {
+        @Override
+        public String decode(DataInputStream in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedThenLoaded() {
+        File directory = new File(folder.getRoot(), "sidecars");
+        Sidecars sidecars = new Sidecars(directory, ".test", 0x54455354, 1);
+        assertTrue(sidecars.isPersistent());
+        assertNull(sidecars.load("/logs/app.log", DECODER));
+        sidecars.store("/logs/app.log", encoder("first"));
+        sidecars.store("/logs/app.log", encoder("second"));
+        assertEquals("second", sidecars.load("/logs/app.log", DECODER));
+        // 替换后不留下临时文件
+        String[] names = directory.list();
+        assertEquals(1, names.length);
+        assertTrue(names[0], names[0].endsWith(".test"));
+    }
+
+    @Test
+    public void headerMismatchIgnored() {
+        File directory = folder.getRoot();
+        new Sidecars(directory, ".test", 0x54455354, 1).store("/logs/app.log", encoder("value"));
+        assertNull(new Sidecars(directory, ".test", 0x54455354, 2).load("/logs/app.log", DECODER));
+        assertNull(new Sidecars(directory, ".test", 0x4F544852, 1).load("/logs/app.log", DECODER));
+        assertNull(new Sidecars(directory, ".test", 0x54455354, 1).load("/logs/other.log", DECODER));
+    }
+
+    @Test
+    public void notPersistent() {
+        Sidecars sidecars = new Sidecars(null, ".test", 0x54455354, 1);
+        assertFalse(sidecars.isPersistent());
+        sidecars.store("/logs/app.log", encoder("value"));
+        assertNull(sidecars.load("/logs/app.log", DECODER));
+    }
+
+    private static Sidecars.Encoder encoder(final String value) {
+        return new Sidecars.Encoder() {
+            @Override
+            public void encode(DataOutputStream out) throws IOException {
+                out.writeUTF(value);
+            }
+        };
+    }
+
+}
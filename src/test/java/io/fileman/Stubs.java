@@ -0,0 +1,321 @@
+package io.fileman;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 测试用的配置、请求、回应及上传文件桩
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+final class Stubs {
+
+    private Stubs() {
+        throw new UnsupportedOperationException();
+    }
+
+    static Configuration configuration(final Map<String, String> values) {
+        return new Configuration() {
+            @Override
+            public Enumeration<String> names() {
+                return Collections.enumeration(values.keySet());
+            }
+
+            @Override
+            public String valueOf(String name) {
+                return values.get(name);
+            }
+
+            @Override
+            public String valueOf(String name, String defaultValue) {
+                String value = values.get(name);
+                return value != null ? value : defaultValue;
+            }
+        };
+    }
+
+    /**
+     * 模拟请求，Servlet 路径为 /fileman
+     */
+    static class Request {
+        final Map<String, String> headers = new HashMap<>();
+        final Map<String, String> parameters = new HashMap<>();
+        final List<Part> parts = new ArrayList<>();
+        private final String method;
+        private final String uri;
+        private byte[] body = new byte[0];
+
+        Request(String method, String uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+
+        Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        Request parameter(String name, String value) {
+            parameters.put(name, value);
+            return this;
+        }
+
+        Request body(byte[] body) {
+            this.body = body;
+            return this;
+        }
+
+        Request part(String filename, byte[] content) {
+            parts.add(Stubs.part(filename, content));
+            return this;
+        }
+
+        HttpServletRequest build() {
+            final ByteArrayInputStream in = new ByteArrayInputStream(body);
+            final ServletInputStream stream = new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+            return proxy(HttpServletRequest.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "getMethod":
+                            return Request.this.method;
+                        case "getRequestURI":
+                            return uri;
+                        case "getContextPath":
+                            return "";
+                        case "getServletPath":
+                            return "/fileman";
+                        case "getHeader":
+                            return headers.get(args[0]);
+                        case "getDateHeader":
+                            String date = headers.get(args[0]);
+                            return date == null ? -1L : Long.valueOf(date);
+                        case "getParameter":
+                            return parameters.get(args[0]);
+                        case "getContentType":
+                            return parts.isEmpty() ? null : "multipart/form-data; boundary=stub";
+                        case "getContentLengthLong":
+                            return parts.isEmpty() ? (long) body.length : -1L;
+                        case "getInputStream":
+                            return stream;
+                        case "getParts":
+                            return new ArrayList<>(parts);
+                        default:
+                            return defaultOf(method);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 记录状态码、回应头及回应内容的回应
+     */
+    static class Response {
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int status = HttpServletResponse.SC_OK;
+        int flushes;
+        private String contentType;
+
+        String body() throws UnsupportedEncodingException {
+            return body.toString("UTF-8");
+        }
+
+        HttpServletResponse build() {
+            final ServletOutputStream out = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    body.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+            return proxy(HttpServletResponse.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    switch (method.getName()) {
+                        case "getOutputStream":
+                            return out;
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        case "getContentType":
+                            return contentType;
+                        case "setContentType":
+                            contentType = (String) args[0];
+                            return null;
+                        case "setStatus":
+                        case "sendError":
+                            status = (Integer) args[0];
+                            return null;
+                        case "setHeader":
+                            headers.put((String) args[0], String.valueOf(args[1]));
+                            return null;
+                        case "setDateHeader":
+                            headers.put((String) args[0], String.valueOf(args[1]));
+                            return null;
+                        case "flushBuffer":
+                            flushes++;
+                            return null;
+                        default:
+                            return defaultOf(method);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @param filename 文件名
+     * @param content  文件内容
+     * @return 上传的文件
+     */
+    static Part part(String filename, byte[] content) {
+        return part(filename, content, null);
+    }
+
+    /**
+     * @param filename 文件名
+     * @param content  文件内容
+     * @param digest   这一部分的 Digest 头
+     * @return 上传的文件
+     */
+    static Part part(String filename, byte[] content, String digest) {
+        return part(filename, content, digest, false);
+    }
+
+    /**
+     * @param filename 文件名
+     * @param content  文件内容
+     * @param digest   这一部分的 Digest 头
+     * @param broken   是否在写出一半内容后中断，模拟客户端断开
+     * @return 上传的文件
+     */
+    static Part part(final String filename, final byte[] content, final String digest, final boolean broken) {
+        return proxy(Part.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "getHeader":
+                        if ("Digest".equalsIgnoreCase((String) args[0])) return digest;
+                        return "Content-Disposition".equalsIgnoreCase((String) args[0]) ? "form-data; name=\"file\"; filename=\"" + filename + "\"" : null;
+                    case "getSubmittedFileName":
+                        return filename;
+                    case "getName":
+                        return "file";
+                    case "getSize":
+                        return (long) content.length;
+                    case "getInputStream":
+                        return broken ? new BrokenInputStream(content) : new ByteArrayInputStream(content);
+                    case "write":
+                        File target = new File((String) args[0]);
+                        InputStream in = broken ? new BrokenInputStream(content) : new ByteArrayInputStream(content);
+                        Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        return null;
+                    default:
+                        return defaultOf(method);
+                }
+            }
+        });
+    }
+
+    /**
+     * 读到一半内容后抛出异常的输入流
+     */
+    private static class BrokenInputStream extends InputStream {
+        private final InputStream in;
+
+        BrokenInputStream(byte[] content) {
+            this.in = new ByteArrayInputStream(content, 0, content.length / 2);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b < 0) throw new IOException("connection reset");
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n < 0) throw new IOException("connection reset");
+            return n;
+        }
+    }
+
+    private static Object defaultOf(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) return false;
+        if (returnType == int.class) return 0;
+        if (returnType == long.class) return 0L;
+        if (returnType == Collection.class) return Collections.emptyList();
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,154 @@
+package io.fileman;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分块上传的接收、提交、重试及并行上传
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class UploadsTest {
+    private static final String CONTENT = "0123456789";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Uploads uploads = new Uploads(60 * 1000L, 4);
+
+    @After
+    public void tearDown() {
+        uploads.release();
+    }
+
+    @Test
+    public void committedWhenComplete() throws Exception {
+        File file = new File(folder.getRoot(), "app.log");
+        Files.write(file.toPath(), bytesOf("old"));
+        Uploads.Upload upload = receive(file, 5, 9, CONTENT);
+        assertFalse(upload.isCommitted());
+        assertNull(upload.getDigest());
+        assertEquals("5-9", upload.getReceived());
+        assertSame(upload, uploads.status(file));
+        // 提交之前目标文件保持原样
+        assertEquals("old", contentOf(file));
+        upload = receive(file, 0, 4, CONTENT);
+        assertTrue(upload.isCommitted());
+        assertArrayEquals(DigestUtils.sha256(CONTENT), upload.getDigest());
+        assertEquals(CONTENT, contentOf(file));
+        assertNull(uploads.status(file));
+        assertArrayEquals(new String[]{"app.log"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void retriedChunkOfCommittedUpload() throws Exception {
+        File file = new File(folder.getRoot(), "app.log");
+        receive(file, 0, 4, CONTENT);
+        Uploads.Upload committed = receive(file, 5, 9, CONTENT);
+        assertTrue(committed.isCommitted());
+        // 与目标文件一致的重试直接视为已提交，不会重新暂存
+        assertSame(committed, receive(file, 5, 9, CONTENT));
+        assertNull(uploads.status(file));
+        assertArrayEquals(new String[]{"app.log"}, folder.getRoot().list());
+        // 内容不同的分块开始新的上传，一致的前缀从目标文件复制
+        Uploads.Upload upload = receive(file, 0, 4, "01X3456789");
+        assertFalse(upload.isCommitted());
+        assertEquals(CONTENT, contentOf(file));
+        upload = receive(file, 5, 9, "01X3456789");
+        assertTrue(upload.isCommitted());
+        assertEquals("01X3456789", contentOf(file));
+    }
+
+    @Test
+    public void rejectedChunks() throws Exception {
+        File file = new File(folder.getRoot(), "app.log");
+        try {
+            uploads.receive(file, ContentRange.valueOf("bytes 0-4/10"), new ByteArrayInputStream(bytesOf("01234")), DigestUtils.sha256("other"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("digest mismatch", e.getMessage());
+        }
+        // 摘要不一致的分块不记录为已接收
+        assertEquals("", uploads.status(file).getReceived());
+        try {
+            uploads.receive(file, ContentRange.valueOf("bytes 0-4/10"), new ByteArrayInputStream(bytesOf("012345")), null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("content is longer than"));
+        }
+        try {
+            uploads.receive(file, ContentRange.valueOf("bytes 0-4/20"), new ByteArrayInputStream(bytesOf("01234")), null);
+            fail();
+        } catch (IllegalStateException e) {
+            // 文件已经在以不同的总长度上传
+        }
+        assertTrue(uploads.abort(file));
+        assertNull(uploads.status(file));
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void parallelChunks() throws Exception {
+        final File file = new File(folder.getRoot(), "big.bin");
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 4096; i++) builder.append((char) ('a' + i % 26));
+        final String content = builder.toString();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Uploads.Upload>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                final int start = i * 64;
+                futures.add(executor.submit(new Callable<Uploads.Upload>() {
+                    @Override
+                    public Uploads.Upload call() throws Exception {
+                        return receive(file, start, start + 63, content);
+                    }
+                }));
+            }
+            int commits = 0;
+            for (Future<Uploads.Upload> future : futures) if (future.get().isCommitted()) commits++;
+            assertTrue(commits >= 1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(content, contentOf(file));
+        assertArrayEquals(new String[]{"big.bin"}, folder.getRoot().list());
+    }
+
+    private Uploads.Upload receive(File file, int first, int last, String content) throws Exception {
+        ContentRange range = ContentRange.valueOf("bytes " + first + "-" + last + "/" + content.length());
+        return uploads.receive(file, range, new ByteArrayInputStream(bytesOf(content.substring(first, last + 1))), null);
+    }
+
+    private static String contentOf(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
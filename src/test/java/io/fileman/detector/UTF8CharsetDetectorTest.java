@@ -0,0 +1,76 @@
+package io.fileman.detector;
+
+import io.fileman.CharsetDetector;
+import io.fileman.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * UTF-8 编码探测，全是 ASCII 时不做判断，被探测范围截断的多字节序列视为合法
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class UTF8CharsetDetectorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final UTF8CharsetDetector detector = new UTF8CharsetDetector();
+
+    private String detect(byte[] bytes, boolean whole) {
+        byte[] head = Arrays.copyOf(bytes, bytes.length + 8);
+        return detector.detect(head, bytes.length, whole);
+    }
+
+    @Test
+    public void utf8() throws Exception {
+        assertEquals("UTF-8", detect("日志 log".getBytes("UTF-8"), true));
+        assertEquals("UTF-8", detect("log 日志".getBytes("UTF-8"), false));
+    }
+
+    @Test
+    public void gbk() throws Exception {
+        assertNull(detect("日志 log".getBytes("GBK"), true));
+        assertNull(detect("log 日志".getBytes("GBK"), false));
+    }
+
+    @Test
+    public void asciiUndetermined() throws Exception {
+        assertNull(detect(new byte[0], true));
+        assertNull(detect("plain ascii".getBytes("UTF-8"), true));
+        // 后续内容的编码未知，不能因为开头全是 ASCII 就判定为 UTF-8
+        assertNull(detect("plain ascii".getBytes("UTF-8"), false));
+    }
+
+    @Test
+    public void truncatedAtWindowEnd() throws Exception {
+        byte[] bytes = "ascii 日".getBytes("UTF-8");
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        assertEquals("UTF-8", detect(truncated, false));
+        // 已经是文件的全部内容时被截断的序列是非法的
+        assertNull(detect(truncated, true));
+        // 只有首字节时还无法判断
+        assertNull(detect(Arrays.copyOf(bytes, bytes.length - 2), false));
+    }
+
+    @Test
+    public void gbkAfterLongAsciiHead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; i++) out.write("2018-10-18 12:00:00 INFO started\n".getBytes("UTF-8"));
+        out.write("2018-10-18 12:00:01 ERROR 连接失败\n".getBytes("GBK"));
+        File file = folder.newFile("gbk.log");
+        Files.write(file.toPath(), out.toByteArray());
+        Charsets charsets = new Charsets(Arrays.<CharsetDetector>asList(new BomCharsetDetector(), detector), 1024, 16, "GBK");
+        assertEquals("GBK", charsets.charsetOf(file));
+    }
+
+}
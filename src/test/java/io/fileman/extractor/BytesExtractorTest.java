@@ -0,0 +1,177 @@
+package io.fileman.extractor;
+
+import io.fileman.ExtractContext;
+import io.fileman.Range;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 字节范围的换算、合并及 multipart/byteranges 回应
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class BytesExtractorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BytesExtractor extractor = new BytesExtractor();
+
+    private String coalesce(String range, long total) {
+        List<Range.Section> sections = extractor.coalesce(Range.valueOf(range), total);
+        StringBuilder builder = new StringBuilder();
+        for (Range.Section section : sections) {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(section.getStart()).append('-').append(section.getEnd());
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void suffixRanges() {
+        assertEquals("90-99", coalesce("bytes=-10", 100));
+        // 后缀长度超过文件长度时取整个文件
+        assertEquals("0-99", coalesce("bytes=-1000", 100));
+        assertEquals("", coalesce("bytes=-0", 100));
+    }
+
+    @Test
+    public void endClampedToLength() {
+        assertEquals("50-99", coalesce("bytes=50-", 100));
+        assertEquals("50-99", coalesce("bytes=50-1000", 100));
+    }
+
+    @Test
+    public void unsatisfiableSectionsDropped() {
+        assertEquals("", coalesce("bytes=100-200", 100));
+        assertEquals("", coalesce("bytes=9-3", 100));
+        assertEquals("0-9", coalesce("bytes=0-9,100-200", 100));
+        assertEquals("", coalesce("bytes=-10", 0));
+    }
+
+    @Test
+    public void overlappingAndAdjacentMerged() {
+        assertEquals("0-29", coalesce("bytes=0-19,10-29", 100));
+        assertEquals("0-19", coalesce("bytes=0-9,10-19", 100));
+        assertEquals("0-19", coalesce("bytes=0-19,5-9", 100));
+        assertEquals("0-9,20-29", coalesce("bytes=20-29,0-9", 100));
+        assertEquals("0-9,90-99", coalesce("bytes=-10,0-9,95-", 100));
+    }
+
+    @Test
+    public void singleRange() throws Exception {
+        File file = write("0123456789");
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        extractor.extract(file, Range.valueOf("bytes=-3"), new ExtractContext(folder.getRoot(), null, null, response(headers, body)));
+        assertEquals("206", headers.get("status"));
+        assertEquals("bytes 7-9/10", headers.get("Content-Range"));
+        assertEquals("3", headers.get("Content-Length"));
+        assertEquals("789", body.toString("ISO-8859-1"));
+    }
+
+    @Test
+    public void byteranges() throws Exception {
+        File file = write("0123456789");
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        extractor.extract(file, Range.valueOf("bytes=8-,0-1,1-2"), new ExtractContext(folder.getRoot(), null, null, response(headers, body)));
+        assertEquals("206", headers.get("status"));
+        String contentType = headers.get("Content-Type");
+        assertTrue(contentType, contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String expected = "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-2/10\r\n"
+                + "\r\n"
+                + "012"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 8-9/10\r\n"
+                + "\r\n"
+                + "89"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, body.toString("ISO-8859-1"));
+        assertEquals(String.valueOf(expected.length()), headers.get("Content-Length"));
+    }
+
+    @Test
+    public void nothingSatisfiable() throws Exception {
+        File file = write("0123456789");
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        extractor.extract(file, Range.valueOf("bytes=20-30"), new ExtractContext(folder.getRoot(), null, null, response(headers, body)));
+        assertEquals("204", headers.get("status"));
+        assertEquals(0, body.size());
+    }
+
+    private File write(String content) throws Exception {
+        File file = folder.newFile("digits.txt");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    /**
+     * @param headers 记录状态码及回应头，状态码的键为 status
+     * @param body    记录回应内容
+     * @return 回应桩
+     */
+    private static HttpServletResponse response(final Map<String, String> headers, final ByteArrayOutputStream body) {
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getOutputStream":
+                        return out;
+                    case "setStatus":
+                    case "sendError":
+                        headers.put("status", String.valueOf(args[0]));
+                        return null;
+                    case "setHeader":
+                        headers.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "setContentType":
+                        headers.put("Content-Type", (String) args[0]);
+                        return null;
+                    default:
+                        return method.getReturnType() == boolean.class ? false : null;
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,188 @@
+package io.fileman.extractor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 稀疏行偏移索引的建立、定位、追加扩展及持久化
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class LineIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 按 \n、\r、\r\n 切分出每一行的起始偏移，作为期望值
+     */
+    private static List<Long> startsOf(byte[] bytes, int from, int width, boolean bigEndian) {
+        List<Long> starts = new ArrayList<>();
+        starts.add((long) from);
+        for (int i = from; i + width <= bytes.length; i += width) {
+            int unit = LineIndex.unitOf(bytes, i, width, bigEndian);
+            boolean crlf = unit == '\r' && i + 2 * width <= bytes.length && LineIndex.unitOf(bytes, i + width, width, bigEndian) == '\n';
+            if (crlf) i += width;
+            if (unit == '\r' || unit == '\n') starts.add((long) i + width);
+        }
+        return starts;
+    }
+
+    private File write(byte[] bytes) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static long offsetOf(LineIndex index, FileChannel channel, long line, String charset) throws IOException {
+        return LineIndex.skip(channel, index.offsetOf(line), index.skipOf(line), charset, ByteBuffer.allocate(8));
+    }
+
+    private void verify(byte[] bytes, String charset, int bom, int interval, int buffer) throws IOException {
+        int width = LineIndex.widthOf(charset);
+        List<Long> starts = startsOf(bytes, bom, width, LineIndex.isBigEndian(charset));
+        // 末尾的行结束符之后没有内容时不算新的一行
+        long total = starts.get(starts.size() - 1) < bytes.length - (bytes.length - bom) % width ? starts.size() : starts.size() - 1;
+        File file = write(bytes);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            LineIndex index = new LineIndex(charset, interval);
+            index.build(channel, bytes.length, 0L, "key", ByteBuffer.allocate(buffer));
+            assertEquals(total, index.getTotal());
+            for (int line = 0; line < total; line++) {
+                assertEquals("line " + line, (long) starts.get(line), offsetOf(index, channel, line, charset));
+            }
+        }
+    }
+
+    @Test
+    public void mixedTerminators() throws IOException {
+        byte[] bytes = "a\nbb\r\nccc\rdddd\n\neee".getBytes("UTF-8");
+        for (int interval = 1; interval <= 4; interval++) {
+            for (int buffer = 1; buffer <= 8; buffer++) verify(bytes, "UTF-8", 0, interval, buffer);
+        }
+    }
+
+    @Test
+    public void trailingTerminator() throws IOException {
+        verify("a\nb\n".getBytes("UTF-8"), "UTF-8", 0, 1, 3);
+        verify("a\r\nb\r\n".getBytes("UTF-8"), "UTF-8", 0, 2, 3);
+        verify("\n\n\n".getBytes("UTF-8"), "UTF-8", 0, 1, 2);
+    }
+
+    @Test
+    public void empty() throws IOException {
+        File file = write(new byte[0]);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            LineIndex index = new LineIndex("UTF-8", 4);
+            index.build(channel, 0L, 0L, "key", ByteBuffer.allocate(8));
+            assertEquals(0L, index.getTotal());
+            assertEquals(0L, index.offsetOf(10));
+        }
+    }
+
+    @Test
+    public void utf8Bom() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        out.write("x\r\ny\nz".getBytes("UTF-8"));
+        verify(out.toByteArray(), "UTF-8", 3, 1, 4);
+    }
+
+    @Test
+    public void utf16() throws IOException {
+        // U+0A0D 在 UTF-16LE 中的两个字节正好是 \r\n，但它不是行结束符，只能按编码单元判断
+        String text = "\uFEFF\u4E00\n\u4E8C\r\n\u4E09\r\u0A0D";
+        verify(text.getBytes(Charset.forName("UTF-16LE")), "UTF-16LE", 2, 1, 4);
+        verify(text.getBytes(Charset.forName("UTF-16BE")), "UTF-16BE", 2, 2, 6);
+    }
+
+    @Test
+    public void extendAfterAppend() throws IOException {
+        File file = write("a\nb\r".getBytes("UTF-8"));
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            LineIndex index = new LineIndex("UTF-8", 2);
+            index.build(channel, channel.size(), 1L, "key", buf);
+            assertEquals(2L, index.getTotal());
+            // 追加的 \n 和上次末尾的 \r 组成一个行结束符
+            channel.write(ByteBuffer.wrap("\nc\nd".getBytes("UTF-8")), channel.size());
+            assertTrue(index.isAppendedBy(channel, channel.size(), "key"));
+            assertFalse(index.isAppendedBy(channel, channel.size(), "other"));
+            LineIndex extended = index.extend(channel, channel.size(), 2L, "UTF-8", buf);
+            assertEquals(2L, index.getTotal());
+            assertEquals(4L, extended.getTotal());
+            assertEquals(2L, extended.getModified());
+            List<Long> starts = startsOf("a\nb\r\nc\nd".getBytes("UTF-8"), 0, 1, true);
+            for (int line = 0; line < 4; line++) assertEquals((long) starts.get(line), offsetOf(extended, channel, line, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void rewriteIsNotAppend() throws IOException {
+        File file = write("a\nb\nc\n".getBytes("UTF-8"));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            LineIndex index = new LineIndex("UTF-8", 2);
+            index.build(channel, channel.size(), 1L, "key", ByteBuffer.allocate(8));
+            channel.write(ByteBuffer.wrap("x".getBytes("UTF-8")), 2);
+            assertFalse(index.isAppendedBy(channel, channel.size(), "key"));
+            channel.truncate(2);
+            assertFalse(index.isAppendedBy(channel, channel.size(), "key"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incompatibleCharset() throws IOException {
+        File file = write("a\n".getBytes("UTF-8"));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            LineIndex index = new LineIndex("UTF-8", 2);
+            index.build(channel, channel.size(), 1L, "key", ByteBuffer.allocate(8));
+            index.extend(channel, channel.size(), 1L, "UTF-16LE", ByteBuffer.allocate(8));
+        }
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) text.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        byte[] bytes = text.toString().getBytes("UTF-8");
+        File file = write(bytes);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            LineIndex index = new LineIndex("UTF-8", 8);
+            index.build(channel, bytes.length, 7L, "key", ByteBuffer.allocate(16));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            index.write(new DataOutputStream(out));
+            LineIndex read = new LineIndex("UTF-8", 8);
+            read.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+            assertEquals(index.getTotal(), read.getTotal());
+            assertEquals(7L, read.getModified());
+            assertEquals("key", read.getKey());
+            assertTrue(read.isAppendedBy(channel, bytes.length, "key"));
+            for (int line = 0; line < 100; line++) assertEquals(offsetOf(index, channel, line, "UTF-8"), offsetOf(read, channel, line, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void skipPastEnd() throws IOException {
+        File file = write("a\nb".getBytes("UTF-8"));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            assertEquals(2L, LineIndex.skip(channel, 0, 1, "UTF-8", ByteBuffer.allocate(2)));
+            assertEquals(3L, LineIndex.skip(channel, 0, 5, "UTF-8", ByteBuffer.allocate(2)));
+            assertEquals(0L, LineIndex.skip(channel, 0, 0, "UTF-8", ByteBuffer.allocate(2)));
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package io.fileman.extractor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 行偏移索引的旁路文件持久化
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class LineIndexerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reloadFromSidecar() throws IOException {
+        File file = folder.newFile("app.log");
+        Files.write(file.toPath(), "a\nb\nc\n".getBytes("UTF-8"));
+        File directory = new File(folder.getRoot(), "indexes");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            LineIndex built = new LineIndexer(2, 4, directory).indexOf(file, channel, "UTF-8");
+            assertEquals(3L, built.getTotal());
+            // 新的索引器不建立索引也能从旁路文件读到
+            LineIndex loaded = new LineIndexer(2, 4, directory).indexOf(file, channel, "UTF-8", false);
+            assertEquals(3L, loaded.getTotal());
+            // 检查点间隔不同的旁路文件不可用
+            assertNull(new LineIndexer(3, 4, directory).indexOf(file, channel, "UTF-8", false));
+        }
+    }
+
+    @Test
+    public void concurrentStores() throws Exception {
+        final File file = folder.newFile("app.log");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) text.append("line ").append(i).append('\n');
+        Files.write(file.toPath(), text.toString().getBytes("UTF-8"));
+        final File directory = new File(folder.getRoot(), "indexes");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        start.await();
+                        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                            return new LineIndexer(16, 4, directory).indexOf(file, channel, "UTF-8").getTotal();
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Long> future : futures) assertEquals(1000L, (long) future.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        String[] names = directory.list();
+        assertEquals(1, names.length);
+        assertTrue(names[0], names[0].endsWith(".idx"));
+    }
+
+}
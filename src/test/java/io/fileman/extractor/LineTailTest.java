@@ -0,0 +1,137 @@
+package io.fileman.extractor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 从文件末尾向前定位最后若干行
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class LineTailTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 从前向后按 \n、\r、\r\n 切分出每一行的起始偏移，末尾的行结束符之后没有内容时不算新的一行
+     */
+    private static List<Long> startsOf(byte[] bytes, int bom, int width, boolean bigEndian) {
+        int end = bytes.length - (bytes.length - bom) % width;
+        List<Long> starts = new ArrayList<>();
+        if (end > bom) starts.add((long) bom);
+        for (int i = bom; i + width <= end; i += width) {
+            int unit = LineIndex.unitOf(bytes, i, width, bigEndian);
+            if (unit == '\r' && i + 2 * width <= end && LineIndex.unitOf(bytes, i + width, width, bigEndian) == '\n') i += width;
+            if ((unit == '\r' || unit == '\n') && i + width < end) starts.add((long) i + width);
+        }
+        return starts;
+    }
+
+    private LineTail scan(byte[] bytes, String charset, long lines, int buffer) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return LineTail.scan(channel, charset, bytes.length, lines, ByteBuffer.allocate(buffer));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    private void verify(byte[] bytes, String charset, int bom, int buffer) throws IOException {
+        int width = LineIndex.widthOf(charset);
+        List<Long> starts = startsOf(bytes, bom, width, LineIndex.isBigEndian(charset));
+        int total = starts.size();
+        for (int lines = 1; lines <= total + 2; lines++) {
+            LineTail tail = scan(bytes, charset, lines, buffer);
+            String message = "lines " + lines + " of " + total + " with buffer " + buffer;
+            if (lines < total) {
+                assertEquals(message, (long) starts.get(total - lines), tail.getOffset());
+                assertEquals(message, lines, tail.getCount());
+                assertFalse(message, tail.isHead());
+            } else {
+                // 文件行数不足或刚好时从文件开头开始，实际行数就是总行数
+                assertEquals(message, (long) bom, tail.getOffset());
+                assertEquals(message, total, tail.getCount());
+                assertTrue(message, tail.isHead());
+            }
+        }
+    }
+
+    @Test
+    public void terminators() throws IOException {
+        String[] texts = {"a\nb\nc", "a\nb\nc\n", "a\r\nb\r\nc\r\n", "a\rb\rc", "a\n\n\nb", "\n", "\n\n", "\r\n", "x"};
+        for (String text : texts) {
+            for (int buffer = 2; buffer <= 8; buffer += 2) verify(text.getBytes("UTF-8"), "UTF-8", 0, buffer);
+        }
+    }
+
+    @Test
+    public void random() throws IOException {
+        Random random = new Random(20181018L);
+        char[] alphabet = {'a', 'b', '\r', '\n'};
+        for (int round = 0; round < 50; round++) {
+            char[] chars = new char[random.nextInt(40)];
+            for (int i = 0; i < chars.length; i++) chars[i] = alphabet[random.nextInt(alphabet.length)];
+            verify(new String(chars).getBytes("UTF-8"), "UTF-8", 0, 2 + 2 * random.nextInt(4));
+        }
+    }
+
+    @Test
+    public void empty() throws IOException {
+        LineTail tail = scan(new byte[0], "UTF-8", 10, 8);
+        assertEquals(0L, tail.getOffset());
+        assertEquals(0L, tail.getCount());
+        assertTrue(tail.isHead());
+    }
+
+    @Test
+    public void noLines() throws IOException {
+        LineTail tail = scan("a\nb\n".getBytes("UTF-8"), "UTF-8", 0, 8);
+        assertEquals(4L, tail.getOffset());
+        assertEquals(0L, tail.getCount());
+    }
+
+    @Test
+    public void utf8Bom() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        out.write("x\r\ny\nz\n".getBytes("UTF-8"));
+        verify(out.toByteArray(), "UTF-8", 3, 4);
+        // 只有 BOM 的文件没有内容
+        LineTail tail = scan(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}, "UTF-8", 5, 4);
+        assertEquals(0L, tail.getCount());
+        assertTrue(tail.isHead());
+    }
+
+    @Test
+    public void utf16() throws IOException {
+        // U+0A0D 在 UTF-16LE 中的两个字节正好是 \r\n，但它不是行结束符
+        String text = "\uFEFF\u4E00\n\u4E8C\r\n\u0A0D\r\u4E09\n";
+        verify(text.getBytes(Charset.forName("UTF-16LE")), "UTF-16LE", 2, 4);
+        verify(text.getBytes(Charset.forName("UTF-16BE")), "UTF-16BE", 2, 6);
+        // 没有 BOM 并且末尾有半个编码单元
+        byte[] bytes = "\u4E00\n\u4E8C".getBytes(Charset.forName("UTF-16BE"));
+        byte[] odd = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, odd, 0, bytes.length);
+        verify(odd, "UTF-16BE", 0, 4);
+    }
+
+}
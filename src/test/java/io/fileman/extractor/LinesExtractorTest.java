@@ -0,0 +1,152 @@
+package io.fileman.extractor;
+
+import io.fileman.ExtractContext;
+import io.fileman.Range;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 按行提取的 Content-Range 回应及区段限制
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class LinesExtractorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LinesExtractor extractor = new LinesExtractor();
+
+    @Test
+    public void singleSection() throws Exception {
+        File file = write("l0\nl1\nl2\nl3\n");
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        extract(file, "lines=1-2", headers, body);
+        assertEquals("206", headers.get("status"));
+        assertEquals("lines 1-2/4", headers.get("Content-Range"));
+        assertEquals("l1\nl2\n", body.toString("UTF-8"));
+    }
+
+    @Test
+    public void suffixAnsweredWithAbsoluteLines() throws Exception {
+        File file = write("l0\nl1\nl2\nl3\n");
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        // 还没有索引并且文件行数多于请求的行数
+        extract(file, "lines=-2", headers, body);
+        assertEquals("206", headers.get("status"));
+        assertEquals("lines 2-3/4", headers.get("Content-Range"));
+        assertEquals("l2\nl3\n", body.toString("UTF-8"));
+    }
+
+    @Test
+    public void suffixReachingHead() throws Exception {
+        File file = write("l0\nl1\nl2\nl3");
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        extract(file, "lines=-10", headers, body);
+        assertEquals("206", headers.get("status"));
+        assertEquals("lines 0-3/4", headers.get("Content-Range"));
+        assertEquals("l0\nl1\nl2\nl3", body.toString("UTF-8"));
+    }
+
+    @Test
+    public void multipleSectionsRejected() throws Exception {
+        File file = write("l0\nl1\nl2\nl3\n");
+        String[] ranges = {"lines=0-0,2-3", "lines=-1,0-0", "lines=1-2,1-2"};
+        for (String range : ranges) {
+            Map<String, String> headers = new HashMap<>();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            extract(file, range, headers, body);
+            assertEquals(range, "400", headers.get("status"));
+            assertEquals(range, null, headers.get("Content-Range"));
+            assertEquals(range, 0, body.size());
+        }
+    }
+
+    private void extract(File file, String range, Map<String, String> headers, ByteArrayOutputStream body) throws Exception {
+        extractor.extract(file, Range.valueOf(range), new ExtractContext(folder.getRoot(), null, request(), response(headers, body)));
+    }
+
+    private File write(String content) throws Exception {
+        File file = folder.newFile("lines.log");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @return 没有任何请求头的请求桩
+     */
+    private static HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return method.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+
+    /**
+     * @param headers 记录状态码及回应头，状态码的键为 status
+     * @param body    记录回应内容
+     * @return 回应桩
+     */
+    private static HttpServletResponse response(final Map<String, String> headers, final ByteArrayOutputStream body) {
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getOutputStream":
+                        return out;
+                    case "setStatus":
+                    case "sendError":
+                        headers.put("status", String.valueOf(args[0]));
+                        return null;
+                    case "setHeader":
+                        headers.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "setContentType":
+                        headers.put("Content-Type", (String) args[0]);
+                        return null;
+                    default:
+                        return method.getReturnType() == boolean.class ? false : null;
+                }
+            }
+        });
+    }
+
+}
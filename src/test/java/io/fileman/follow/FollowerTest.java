@@ -0,0 +1,235 @@
+package io.fileman.follow;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 跟踪文件追加的行、跟踪者的注册及超时断开
+ *
+ * @author 杨昌沛 646742615@qq.com
+ * 2018/10/18
+ */
+public class FollowerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Follower follower;
+
+    @After
+    public void tearDown() {
+        if (follower != null) follower.release();
+    }
+
+    @Test
+    public void appendedLinesPushed() throws Exception {
+        follower = new Follower(10, 1024 * 1024, 60 * 1000);
+        File file = write("old\n");
+        final Client client = follow(file);
+        append(file, "new line\r\nnext\n");
+        await(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return client.body().contains("data: next\n\n");
+            }
+        });
+        String body = client.body();
+        assertTrue(body, body.startsWith(":\n\n"));
+        assertTrue(body, body.contains("data: new line\n\ndata: next\n\n"));
+        assertFalse(body, body.contains("old"));
+        assertFalse(client.completed);
+    }
+
+    @Test
+    public void everyFollowerSubscribed() throws Exception {
+        // 检查线程几乎不停地运行，新创建的读取者在加入跟踪者之前不能被当作空闲移除
+        follower = new Follower(1, 1024 * 1024, 60 * 1000);
+        final List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            File file = write("");
+            clients.add(follow(file));
+            append(file, "line " + i + "\n");
+        }
+        await(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                for (int i = 0; i < clients.size(); i++) {
+                    if (!clients.get(i).body().contains("data: line " + i + "\n\n")) return false;
+                }
+                return true;
+            }
+        });
+        assertEquals(50, follower.getFeeds());
+    }
+
+    @Test
+    public void stalledFollowerDisconnected() throws Exception {
+        follower = new Follower(10, 1024 * 1024, 200);
+        final Client client = new Client(false);
+        follower.follow(write(""), "UTF-8", client.request(), client.response());
+        await(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return client.completed && follower.getFeeds() == 0;
+            }
+        });
+    }
+
+    @Test
+    public void idleFollowerKept() throws Exception {
+        follower = new Follower(10, 1024 * 1024, 200);
+        Client client = follow(write(""));
+        // 没有数据等待写出的跟踪者不会超时
+        Thread.sleep(600);
+        assertFalse(client.completed);
+        assertEquals(1, follower.getFeeds());
+    }
+
+    @Test
+    public void backlogExceededDisconnected() throws Exception {
+        follower = new Follower(10, 16, 60 * 1000);
+        File file = write("");
+        final Client client = new Client(false);
+        follower.follow(file, "UTF-8", client.request(), client.response());
+        append(file, "a line longer than the backlog\n");
+        await(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return client.completed && follower.getFeeds() == 0;
+            }
+        });
+    }
+
+    private Client follow(File file) throws IOException {
+        Client client = new Client(true);
+        follower.follow(file, "UTF-8", client.request(), client.response());
+        return client;
+    }
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void append(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static void await(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10 * 1000L;
+        while (!condition.call()) {
+            assertTrue("timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 模拟支持异步的客户端，记录写出的内容及异步上下文是否已经结束
+     */
+    private static class Client {
+        private final boolean ready;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final List<AsyncListener> listeners = new ArrayList<>();
+        private volatile boolean completed;
+
+        Client(boolean ready) {
+            this.ready = ready;
+        }
+
+        String body() {
+            synchronized (body) {
+                return new String(body.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+
+        HttpServletRequest request() {
+            final AsyncContext async = proxy(AsyncContext.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "addListener":
+                            listeners.add((AsyncListener) args[0]);
+                            return null;
+                        case "complete":
+                            if (completed) throw new IllegalStateException();
+                            completed = true;
+                            for (AsyncListener listener : listeners) listener.onComplete(new AsyncEvent((AsyncContext) proxy));
+                            return null;
+                        default:
+                            return null;
+                    }
+                }
+            });
+            return proxy(HttpServletRequest.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return method.getName().equals("startAsync") ? async : null;
+                }
+            });
+        }
+
+        HttpServletResponse response() {
+            final ServletOutputStream out = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    synchronized (body) {
+                        body.write(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    synchronized (body) {
+                        body.write(b, off, len);
+                    }
+                }
+
+                @Override
+                public boolean isReady() {
+                    return ready;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+            return proxy(HttpServletResponse.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return method.getName().equals("getOutputStream") ? out : null;
+                }
+            });
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+}